@@ -0,0 +1,125 @@
+package com.my.app.benchmarks;
+
+import com.my.app.batch.BatchEngine;
+import com.my.app.batch.BatchListener;
+import com.my.app.batch.BatchResult;
+import com.my.app.batch.MemoryBudget;
+import com.my.app.io.DecodedImageCache;
+import com.my.app.io.ImageFileIO;
+import com.my.app.io.WriteOptions;
+import com.my.app.processor.ComputePool;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.TileResultCache;
+import com.my.app.processor.TileSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The batch path end to end: {@link BatchEngine} decodes each JPEG input, runs every filter on
+ * it through the tiled processor and encodes each result, with its decode, filter and encode
+ * stages overlapping. {@code format} compares default PNG, fast PNG (level 1) and JPEG output.
+ * Each invocation starts from an empty output directory, so the batch manifest never lets it
+ * skip work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int FILE_COUNT = 4;
+    private static final List<String> FILTER_NAMES = List.of("Grayscale", "Blur", "Vintage");
+
+    @Param({"1MP", "12MP"})
+    public String resolution;
+
+    @Param({"png", "png-fast", "jpeg"})
+    public String format;
+
+    private Path workDirectory;
+    private List<File> inputFiles;
+    private File outputDirectory;
+    private BufferedImage image;
+    private BatchEngine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("batch-benchmark");
+        outputDirectory = Files.createDirectory(workDirectory.resolve("output")).toFile();
+        inputFiles = new ArrayList<>();
+        image = BenchmarkImages.create(resolution, "INT_RGB");
+        for (int i = 0; i < FILE_COUNT; i++) {
+            File file = workDirectory.resolve("input" + i + ".jpg").toFile();
+            ImageIO.write(image, "jpg", file);
+            inputFiles.add(file);
+        }
+        WriteOptions writeOptions = switch (format) {
+            case "png" -> WriteOptions.PNG;
+            case "png-fast" -> WriteOptions.png(1);
+            case "jpeg" -> WriteOptions.jpeg(WriteOptions.DEFAULT_JPEG_QUALITY);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        ImageProcessor processor = new ImageProcessor(ComputePool.shared(), TileSink.NONE, TileResultCache.disabled());
+        engine = new BatchEngine(new ImageFileIO(DecodedImageCache.disabled()), processor,
+                MemoryBudget.fromSystemProperty(), BatchEngine.DEFAULT_DECODE_THREADS,
+                BatchEngine.DEFAULT_ENCODE_THREADS, writeOptions);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearOutput() throws IOException {
+        deleteContents(outputDirectory.toPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteContents(workDirectory);
+        Files.delete(workDirectory);
+    }
+
+    @Benchmark
+    public BatchResult processBatch(Megapixels counter) throws Exception {
+        BatchResult result = engine.run(inputFiles, FILTER_NAMES, outputDirectory, BatchListener.NONE, () -> false);
+        if (!result.isComplete()) {
+            throw new IllegalStateException("Batch completed " + result.getCompletedOperations() + " of "
+                    + result.getTotalOperations() + " operations");
+        }
+        for (int i = 0; i < result.getTotalOperations(); i++) {
+            counter.add(image);
+        }
+        return result;
+    }
+
+    private static void deleteContents(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!path.equals(directory)) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.my.app.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic photo-like test images: smooth color gradients with sensor-style noise, so
+ * neither the filters nor the PNG encoder see unrealistically flat or random data.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Creates an image of the named resolution ({@code 1MP}, {@code 12MP} or {@code 48MP},
+     * all 4:3) and {@link BufferedImage} type ({@code INT_RGB}, {@code INT_ARGB} or
+     * {@code 3BYTE_BGR}, the type ImageIO decodes JPEGs to).
+     */
+    static BufferedImage create(String resolution, String imageType) {
+        int[] size = dimensions(resolution);
+        BufferedImage rgb = gradient(size[0], size[1]);
+        int type = type(imageType);
+        if (type == BufferedImage.TYPE_INT_RGB) {
+            return rgb;
+        }
+        BufferedImage converted = new BufferedImage(size[0], size[1], type);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(rgb, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    static int[] dimensions(String resolution) {
+        return switch (resolution) {
+            case "1MP" -> new int[]{1152, 864};
+            case "12MP" -> new int[]{4000, 3000};
+            case "48MP" -> new int[]{8000, 6000};
+            default -> throw new IllegalArgumentException("Unknown resolution: " + resolution);
+        };
+    }
+
+    static double megapixels(BufferedImage image) {
+        return (double) image.getWidth() * image.getHeight() / 1_000_000;
+    }
+
+    private static int type(String imageType) {
+        return switch (imageType) {
+            case "INT_RGB" -> BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB" -> BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR" -> BufferedImage.TYPE_3BYTE_BGR;
+            default -> throw new IllegalArgumentException("Unknown image type: " + imageType);
+        };
+    }
+
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = 255 * x / width;
+                int g = 255 * y / height;
+                int b = 128 + (int) (100 * Math.sin((x + y) * 0.01));
+                int noise = random.nextInt(-12, 13);
+                pixels[y * width + x] = (clamp(r + noise) << 16) | (clamp(g + noise) << 8) | clamp(b + noise);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+}
@@ -0,0 +1,56 @@
+package com.my.app.benchmarks;
+
+import com.my.app.filters.FilterFactory;
+import com.my.app.filters.ImageFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded {@link ImageFilter#apply(BufferedImage)} for every registered filter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({"Grayscale", "Sepia", "Blur", "Sharpen", "Edge Detection", "Emboss", "Vintage", "Color Boost"})
+    public String filterName;
+
+    @Param({"1MP", "12MP", "48MP"})
+    public String resolution;
+
+    @Param({"INT_RGB", "3BYTE_BGR"})
+    public String imageType;
+
+    private BufferedImage image;
+    private ImageFilter filter;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkImages.create(resolution, imageType);
+        filter = FilterFactory.getFilter(filterName);
+        if (filter == null) {
+            throw new IllegalArgumentException("Unknown filter: " + filterName);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage apply(Megapixels counter) {
+        counter.add(image);
+        return filter.apply(image);
+    }
+}
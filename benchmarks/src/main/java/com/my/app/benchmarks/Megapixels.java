@@ -0,0 +1,28 @@
+package com.my.app.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Counts the megapixels a benchmark has processed. JMH divides the total by the measured
+ * time, so in throughput mode the secondary {@code megapixels} result is in MP/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Megapixels {
+    public double megapixels;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megapixels = 0;
+    }
+
+    void add(BufferedImage image) {
+        megapixels += BenchmarkImages.megapixels(image);
+    }
+}
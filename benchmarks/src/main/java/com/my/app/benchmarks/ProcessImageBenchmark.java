@@ -0,0 +1,88 @@
+package com.my.app.benchmarks;
+
+import com.my.app.filters.FilterFactory;
+import com.my.app.filters.ImageFilter;
+import com.my.app.image.DrawMultipleImagesOnCanvas;
+import com.my.app.processor.ComputePool;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.TilePlanner;
+import com.my.app.processor.TileResultCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ImageProcessor#processImage} in sync mode and in async mode across tile geometries.
+ * <p>
+ * {@code mode} is {@code sync}, {@code async-auto}, {@code async-<tile size>} or
+ * {@code strips} (automatic row strips).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ProcessImageBenchmark {
+    @Param({"Grayscale", "Blur", "Edge Detection"})
+    public String filterName;
+
+    @Param({"1MP", "12MP", "48MP"})
+    public String resolution;
+
+    @Param({"sync", "async-auto", "async-64", "async-256", "async-1024", "strips"})
+    public String mode;
+
+    private BufferedImage image;
+    private ImageFilter filter;
+    private ImageProcessor processor;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkImages.create(resolution, "INT_RGB");
+        filter = FilterFactory.getFilter(filterName);
+        if (filter == null) {
+            throw new IllegalArgumentException("Unknown filter: " + filterName);
+        }
+        // Every invocation filters the same image, so a tile cache would measure only the copies
+        processor = new ImageProcessor(ComputePool.shared(), DrawMultipleImagesOnCanvas.getInstance()::addImageToQueue,
+                TileResultCache.disabled());
+    }
+
+    @Benchmark
+    public BufferedImage processImage(Megapixels counter) {
+        counter.add(image);
+        return switch (mode) {
+            case "sync" -> processor.processImage(image, ImageProcessor.AUTO_TILE_SIZE, filter, false);
+            case "async-auto" -> processor.processImage(image, ImageProcessor.AUTO_TILE_SIZE, filter, true);
+            case "strips" -> processor.processImage(image, filter, TilePlanner.Layout.ROW_STRIPS);
+            default -> processor.processImage(image, tileSize(), filter, true);
+        };
+    }
+
+    // Nothing drains the canvas queue without a JavaFX stage, and it would keep every result alive
+    @TearDown(Level.Invocation)
+    public void dropQueuedTiles() {
+        DrawMultipleImagesOnCanvas.getInstance().clear();
+    }
+
+    private int tileSize() {
+        if (!mode.startsWith("async-")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        return Integer.parseInt(mode.substring("async-".length()));
+    }
+}
@@ -4,10 +4,15 @@ import com.my.app.batch.BatchProcessor;
 import com.my.app.filters.FilterFactory;
 import com.my.app.filters.ImageFilter;
 import com.my.app.image.DrawMultipleImagesOnCanvas;
+import com.my.app.io.AsyncImageWriter;
 import com.my.app.io.ImageFileIO;
 import com.my.app.io.ImageOperations;
+import com.my.app.io.ReadOptions;
+import com.my.app.io.WriteOptions;
+import com.my.app.processor.ComputePool;
 import com.my.app.processor.ImageProcessor;
 import com.my.app.ui.ImageSelectionDialog;
+import com.my.app.ui.ProgressivePreview;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -23,8 +28,6 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -33,27 +36,40 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class HelloApplication extends Application {
+    /** Longest side decoded for the original-image preview. */
+    private static final int PREVIEW_MAX_DIMENSION = 800;
+    
     private Stage primaryStage;
     private BufferedImage currentImage;
+    // The subsampled decode shown as the original, also filtered as a quick first result
+    private BufferedImage previewImage;
+    // The last full-resolution result; the processed view only shows a display copy of it
+    private BufferedImage processedImage;
     private String currentImageName;
+    private long loadGeneration;
+    // The full-resolution pass of a filter picked while the full image was still decoding
+    private Runnable pendingFullRun;
     private ImageOperations imageIO;
     private ImageProcessor processor;
+    private ProgressivePreview preview;
+    private CheckBox progressiveCheckBox;
     private ImageView originalImageView;
     private ImageView processedImageView;
     private ProgressBar processingProgress;
     private TextArea logArea;
-    private ExecutorService executorService;
+    private ComputePool computePool;
+    private AsyncImageWriter imageWriter;
     
     @Override
     public void start(Stage stage) throws IOException, URISyntaxException {
         this.primaryStage = stage;
         this.imageIO = new ImageFileIO();
-        this.processor = new ImageProcessor();
-        this.executorService = Executors.newCachedThreadPool();
+        this.computePool = ComputePool.shared();
+        this.processor = new ImageProcessor(computePool);
+        this.preview = new ProgressivePreview(processor);
+        this.imageWriter = new AsyncImageWriter(imageIO);
         
         initializeUI();
         
@@ -183,6 +199,15 @@ public class HelloApplication extends Application {
         tileSizeSlider.valueProperty().addListener((obs, oldVal, newVal) -> 
             tileSizeValue.setText(String.valueOf(newVal.intValue())));
         
+        // Picking a filter shows it on the preview at once, then refines it
+        progressiveCheckBox = new CheckBox("Progressive preview");
+        progressiveCheckBox.setSelected(true);
+        filterList.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && progressiveCheckBox.isSelected() && previewImage != null) {
+                previewFilter(newVal, asyncRadio.isSelected(), (int) tileSizeSlider.getValue());
+            }
+        });
+        
         Button processBtn = new Button("Apply Filter");
         processBtn.setPrefWidth(200);
         processBtn.setStyle("-fx-background-color: #4CAF50; -fx-text-fill: white; -fx-font-weight: bold;");
@@ -202,7 +227,7 @@ public class HelloApplication extends Application {
             filtersLabel, filterList, new Separator(),
             processingLabel, asyncRadio, syncRadio, new Separator(),
             tileSizeLabel, tileSizeSlider, tileSizeValue, new Separator(),
-            processBtn, processingProgress
+            progressiveCheckBox, processBtn, processingProgress
         );
         
         return panel;
@@ -270,29 +295,77 @@ public class HelloApplication extends Application {
         }
     }
     
+    /**
+     * Shows a subsampled preview at once and decodes the full-resolution image, which filters
+     * need, in the background.
+     */
     private void loadImageFromPath(String imagePath) {
-        Optional<BufferedImage> imageOpt = imageIO.readImage(imagePath);
-        if (imageOpt.isPresent()) {
-            currentImage = imageOpt.get();
-            currentImageName = new File(imagePath).getName();
-            
-            // Convert BufferedImage to JavaFX Image
-            Image fxImage = convertToFXImage(currentImage);
-            originalImageView.setImage(fxImage);
-            
-            // Initialize canvas for drawing
-            DrawMultipleImagesOnCanvas drawMultipleImagesOnCanvas = DrawMultipleImagesOnCanvas.getInstance();
-            drawMultipleImagesOnCanvas.initialize(new Stage(), currentImage.getWidth(), currentImage.getHeight());
-            
-            logArea.appendText("Loaded image: " + currentImageName + " (" + 
-                             currentImage.getWidth() + "x" + currentImage.getHeight() + ")\n");
-        } else {
+        Optional<BufferedImage> previewOpt = imageIO.readImage(imagePath, ReadOptions.fitWithin(PREVIEW_MAX_DIMENSION));
+        if (previewOpt.isEmpty()) {
             logArea.appendText("Failed to load image from: " + imagePath + "\n");
+            return;
         }
+        
+        long generation = ++loadGeneration;
+        preview.cancel();
+        pendingFullRun = null;
+        currentImage = null;
+        previewImage = previewOpt.get();
+        currentImageName = new File(imagePath).getName();
+        originalImageView.setImage(ProgressivePreview.displayImageOf(previewImage));
+        
+        Task<Optional<BufferedImage>> load = new Task<Optional<BufferedImage>>() {
+            @Override
+            protected Optional<BufferedImage> call() {
+                return imageIO.readImage(imagePath);
+            }
+            
+            @Override
+            protected void succeeded() {
+                // Another image was opened meanwhile
+                if (generation != loadGeneration) {
+                    return;
+                }
+                Optional<BufferedImage> imageOpt = getValue();
+                Runnable fullRun = pendingFullRun;
+                pendingFullRun = null;
+                if (imageOpt.isEmpty()) {
+                    logArea.appendText("Failed to load image from: " + imagePath + "\n");
+                    processingProgress.setProgress(0);
+                    return;
+                }
+                currentImage = imageOpt.get();
+                
+                // Initialize canvas for drawing
+                DrawMultipleImagesOnCanvas drawMultipleImagesOnCanvas = DrawMultipleImagesOnCanvas.getInstance();
+                drawMultipleImagesOnCanvas.initialize(new Stage(), currentImage.getWidth(), currentImage.getHeight());
+                
+                logArea.appendText("Loaded image: " + currentImageName + " (" + 
+                                 currentImage.getWidth() + "x" + currentImage.getHeight() + ")\n");
+                if (fullRun != null) {
+                    fullRun.run();
+                }
+            }
+        };
+        computePool.execute(load);
+    }
+    
+    /**
+     * Shows {@code filterName} on the preview and then the full image, without saving it.
+     */
+    private void previewFilter(String filterName, boolean isAsync, int tileSize) {
+        runFilter(filterName, isAsync, tileSize, false);
     }
     
+    /**
+     * Applies {@code filterName} and saves the full-resolution result to {@code output/}.
+     */
     private void processImage(String filterName, boolean isAsync, int tileSize) {
-        if (currentImage == null) {
+        runFilter(filterName, isAsync, tileSize, true);
+    }
+    
+    private void runFilter(String filterName, boolean isAsync, int tileSize, boolean save) {
+        if (previewImage == null) {
             logArea.appendText("No image loaded. Please select an image first.\n");
             return;
         }
@@ -303,58 +376,77 @@ public class HelloApplication extends Application {
             return;
         }
         
-        logArea.appendText("Applying " + filterName + " filter " + (isAsync ? "asynchronously" : "synchronously") + "...\n");
+        logArea.appendText((save ? "Applying " : "Previewing ") + filterName + " filter "
+                + (isAsync ? "asynchronously" : "synchronously") + "...\n");
+        processingProgress.setProgress(-1); // Indeterminate
+        
+        // Replaces any run still in flight, whose results are then dropped
+        processedImage = null;
+        FilterRun run = new FilterRun(save);
+        BufferedImage proxy = progressiveCheckBox.isSelected() ? previewImage : null;
+        if (currentImage != null) {
+            pendingFullRun = null;
+            preview.start(proxy, currentImage, filter, tileSize, isAsync, run);
+            return;
+        }
         
-        Task<BufferedImage> task = new Task<BufferedImage>() {
-            @Override
-            protected BufferedImage call() throws Exception {
-                Platform.runLater(() -> processingProgress.setProgress(-1)); // Indeterminate
-                BufferedImage result = processor.processImage(currentImage, tileSize, filter, isAsync);
-                Platform.runLater(() -> processingProgress.setProgress(1)); // Complete
-                return result;
-            }
+        // The preview is already decoded: filter it now and the full image once it arrives
+        logArea.appendText("Full image still loading, " + filterName + " will follow at full resolution\n");
+        pendingFullRun = () -> preview.start(run.proxyShown ? null : proxy, currentImage, filter, tileSize, isAsync, run);
+        if (proxy != null) {
+            preview.start(proxy, null, filter, tileSize, isAsync, run);
+        } else {
+            preview.cancel();
+        }
+    }
+    
+    /** Shows one filter run's results, and saves the full-resolution one when asked to. */
+    private final class FilterRun implements ProgressivePreview.Listener {
+        private final boolean save;
+        private boolean proxyShown;
+        
+        FilterRun(boolean save) {
+            this.save = save;
+        }
+        
+        @Override
+        public void proxyReady(BufferedImage result, Image display, long elapsedMillis) {
+            proxyShown = true;
+            processedImageView.setImage(display);
+            logArea.appendText("Preview ready in " + elapsedMillis + " ms, refining...\n");
+        }
+        
+        @Override
+        public void fullReady(BufferedImage result, Image display, long elapsedMillis) {
+            processedImage = result;
+            processedImageView.setImage(display);
             
-            @Override
-            protected void succeeded() {
-                BufferedImage processedImage = getValue();
-                Image fxImage = convertToFXImage(processedImage);
-                processedImageView.setImage(fxImage);
-                
-                // Save processed image
+            if (save) {
+                // Save processed image off the UI thread
                 String outputFileName = "filtered_" + currentImageName;
-                imageIO.sendImage(processedImage, outputFileName);
-                
-                logArea.appendText("Filter applied successfully! Saved as: " + outputFileName + "\n");
-                processingProgress.setProgress(0);
+                imageWriter.trySubmit(processedImage, new File("output/" + outputFileName + ".png"), WriteOptions.PNG)
+                        .ifPresentOrElse(written -> written.whenComplete((file, error) -> Platform.runLater(() ->
+                                        logArea.appendText(error == null
+                                                ? "Saved as: " + outputFileName + "\n"
+                                                : "Failed to save " + outputFileName + ": " + error.getMessage() + "\n"))),
+                                () -> logArea.appendText("Writer busy, " + outputFileName + " was not saved\n"));
             }
             
-            @Override
-            protected void failed() {
-                Throwable exception = getException();
-                String errorMessage = exception.getMessage();
-                
-                logArea.appendText("Error processing image: " + errorMessage + "\n");
-                processingProgress.setProgress(0);
-                
-                // Show user-friendly alert for tile size errors
-                if (exception instanceof IllegalArgumentException && errorMessage.contains("Tile size")) {
-                    Platform.runLater(() -> {
-                        Alert alert = new Alert(Alert.AlertType.ERROR);
-                        alert.setTitle("Invalid Tile Size");
-                        alert.setHeaderText("Tile size doesn't divide image dimensions evenly");
-                        alert.setContentText(errorMessage);
-                        alert.getDialogPane().setPrefWidth(600);
-                        alert.showAndWait();
-                    });
-                }
-            }
-        };
+            logArea.appendText("Filter applied successfully in " + elapsedMillis + " ms!\n");
+            processingProgress.setProgress(0);
+        }
         
-        executorService.submit(task);
+        @Override
+        public void failed(Throwable exception) {
+            String errorMessage = exception.getMessage();
+            
+            logArea.appendText("Error processing image: " + errorMessage + "\n");
+            processingProgress.setProgress(0);
+        }
     }
     
     private void saveProcessedImage() {
-        if (processedImageView.getImage() == null) {
+        if (processedImage == null) {
             logArea.appendText("No processed image to save.\n");
             return;
         }
@@ -370,9 +462,8 @@ public class HelloApplication extends Application {
         File saveFile = fileChooser.showSaveDialog(primaryStage);
         if (saveFile != null) {
             try {
-                BufferedImage bufferedImage = convertFromFXImage(processedImageView.getImage());
                 String format = saveFile.getName().toLowerCase().endsWith(".png") ? "PNG" : "JPEG";
-                ImageIO.write(bufferedImage, format, saveFile);
+                ImageIO.write(processedImage, format, saveFile);
                 logArea.appendText("Image saved as: " + saveFile.getName() + "\n");
             } catch (IOException e) {
                 logArea.appendText("Error saving image: " + e.getMessage() + "\n");
@@ -467,7 +558,7 @@ public class HelloApplication extends Application {
                 inputFiles, selectedFilters, outputDirectory, batchProgress, batchLogArea
             );
             
-            executorService.submit(batchTask);
+            computePool.execute(batchTask);
             dialog.close();
         });
         
@@ -491,39 +582,14 @@ public class HelloApplication extends Application {
         alert.showAndWait();
     }
     
-    private Image convertToFXImage(BufferedImage bufferedImage) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "PNG", baos);
-            ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-            return new Image(bais);
-        } catch (IOException e) {
-            logArea.appendText("Error converting image: " + e.getMessage() + "\n");
-            return null;
-        }
-    }
-    
-    private BufferedImage convertFromFXImage(Image fxImage) {
-        int width = (int) fxImage.getWidth();
-        int height = (int) fxImage.getHeight();
-        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        javafx.scene.image.PixelReader pixelReader = fxImage.getPixelReader();
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb = pixelReader.getArgb(x, y);
-                bufferedImage.setRGB(x, y, argb);
-            }
-        }
-        
-        return bufferedImage;
-    }
-    
     @Override
     public void stop() throws Exception {
         super.stop();
-        if (executorService != null) {
-            executorService.shutdown();
+        if (imageWriter != null) {
+            imageWriter.close();
+        }
+        if (computePool != null) {
+            computePool.close();
         }
     }
     
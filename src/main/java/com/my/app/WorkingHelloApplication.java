@@ -2,44 +2,55 @@ package com.my.app;
 
 import com.my.app.filters.FilterFactory;
 import com.my.app.filters.ImageFilter;
+import com.my.app.io.AsyncImageWriter;
 import com.my.app.io.ImageFileIO;
 import com.my.app.io.ImageOperations;
+import com.my.app.io.WriteOptions;
+import com.my.app.processor.ComputePool;
 import com.my.app.processor.ImageProcessor;
+import com.my.app.ui.ProgressivePreview;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class WorkingHelloApplication extends Application {
     private BufferedImage currentImage;
+    private BufferedImage proxyImage;
     private String currentImageName;
     private ImageOperations imageIO;
     private ImageProcessor processor;
+    private ProgressivePreview preview;
+    private ImageView previewView;
     private TextArea logArea;
-    private ExecutorService executorService;
+    private ComputePool computePool;
+    private AsyncImageWriter imageWriter;
     
     @Override
     public void start(Stage primaryStage) {
         System.out.println("🎨 Advanced Image Processor - Starting...");
         
         this.imageIO = new ImageFileIO();
-        this.processor = new ImageProcessor();
-        this.executorService = Executors.newCachedThreadPool();
+        this.computePool = ComputePool.shared();
+        this.processor = new ImageProcessor(computePool);
+        this.preview = new ProgressivePreview(processor);
+        this.imageWriter = new AsyncImageWriter(imageIO);
         
         try {
             // Load default image
@@ -85,6 +96,12 @@ public class WorkingHelloApplication extends Application {
         }
         imageInfoLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #7f8c8d;");
         
+        // Filtered result, shown on a proxy first and then at full resolution
+        previewView = new ImageView();
+        previewView.setFitWidth(400);
+        previewView.setFitHeight(300);
+        previewView.setPreserveRatio(true);
+        
         // Filter selection
         Label filtersLabel = new Label("🎛️ Available Filters:");
         filtersLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
@@ -98,6 +115,9 @@ public class WorkingHelloApplication extends Application {
         CheckBox asyncCheckBox = new CheckBox("Asynchronous Processing (Recommended)");
         asyncCheckBox.setSelected(true);
         
+        CheckBox progressiveCheckBox = new CheckBox("Progressive Preview");
+        progressiveCheckBox.setSelected(true);
+        
         Label tileSizeLabel = new Label("Tile Size:");
         Slider tileSizeSlider = new Slider(20, 100, 40);
         tileSizeSlider.setShowTickLabels(true);
@@ -119,6 +139,13 @@ public class WorkingHelloApplication extends Application {
         progressBar.setPrefWidth(300);
         progressBar.setVisible(false);
         
+        // Picking a filter previews it straight away; a newer pick cancels the older run
+        filterComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && progressiveCheckBox.isSelected() && currentImage != null) {
+                previewFilter(newVal, asyncCheckBox.isSelected(), (int) tileSizeSlider.getValue(), progressBar);
+            }
+        });
+        
         // Process button action
         processButton.setOnAction(e -> {
             if (currentImage == null) {
@@ -130,38 +157,47 @@ public class WorkingHelloApplication extends Application {
             boolean isAsync = asyncCheckBox.isSelected();
             int tileSize = (int) tileSizeSlider.getValue();
             
-            processButton.setDisable(true);
             progressBar.setVisible(true);
             progressBar.setProgress(-1); // Indeterminate
             
             logArea.appendText("🔄 Applying " + selectedFilter + " filter " + (isAsync ? "asynchronously" : "synchronously") + "...\\n");
             
-            // Process in background
-            executorService.submit(() -> {
-                try {
-                    ImageFilter filter = FilterFactory.getFilter(selectedFilter);
-                    BufferedImage processedImage = processor.processImage(currentImage, tileSize, filter, isAsync);
+            // Process in background, replacing any preview still in flight
+            ImageFilter filter = FilterFactory.getFilter(selectedFilter);
+            BufferedImage proxy = progressiveCheckBox.isSelected() ? proxyImage : null;
+            preview.start(proxy, currentImage, filter, tileSize, isAsync, new ProgressivePreview.Listener() {
+                @Override
+                public void proxyReady(BufferedImage result, Image display, long elapsedMillis) {
+                    previewView.setImage(display);
+                }
+                
+                @Override
+                public void fullReady(BufferedImage processedImage, Image display, long elapsedMillis) {
+                    previewView.setImage(display);
                     
-                    // Save processed image
+                    // Save processed image without holding up the next filter run
                     String outputFileName = "filtered_" + selectedFilter.toLowerCase().replace(" ", "_") + "_" + currentImageName;
-                    imageIO.sendImage(processedImage, outputFileName);
-                    
-                    Platform.runLater(() -> {
-                        progressBar.setProgress(1);
-                        progressBar.setVisible(false);
-                        processButton.setDisable(false);
-                        logArea.appendText("✅ " + selectedFilter + " filter applied successfully!\\n");
-                        logArea.appendText("💾 Saved as: " + outputFileName + "\\n");
-                        showAlert("Success", "Filter applied successfully!\\nSaved as: " + outputFileName);
-                    });
+                    boolean saving = imageWriter.trySubmit(processedImage, new File("output/" + outputFileName + ".png"),
+                                    WriteOptions.PNG)
+                            .map(written -> written.whenComplete((file, error) -> Platform.runLater(() ->
+                                    logArea.appendText(error == null
+                                            ? "💾 Saved as: " + outputFileName + "\n"
+                                            : "❌ Failed to save " + outputFileName + ": " + error.getMessage() + "\n"))))
+                            .isPresent();
                     
-                } catch (Exception ex) {
-                    Platform.runLater(() -> {
-                        progressBar.setVisible(false);
-                        processButton.setDisable(false);
-                        logArea.appendText("❌ Error applying filter: " + ex.getMessage() + "\\n");
-                        showAlert("Error", "Error applying filter: " + ex.getMessage());
-                    });
+                    progressBar.setProgress(1);
+                    progressBar.setVisible(false);
+                    logArea.appendText("✅ " + selectedFilter + " filter applied successfully!\n");
+                    showAlert("Success", saving
+                            ? "Filter applied successfully!\nSaving as: " + outputFileName
+                            : "Filter applied successfully!\nWriter busy, " + outputFileName + " was not saved");
+                }
+                
+                @Override
+                public void failed(Throwable ex) {
+                    progressBar.setVisible(false);
+                    logArea.appendText("❌ Error applying filter: " + ex.getMessage() + "\n");
+                    showAlert("Error", "Error applying filter: " + ex.getMessage());
                 }
             });
         });
@@ -196,10 +232,12 @@ public class WorkingHelloApplication extends Application {
             titleLabel,
             new Separator(),
             imageInfoLabel,
+            previewView,
             new Separator(),
             filtersLabel,
             filterComboBox,
             asyncCheckBox,
+            progressiveCheckBox,
             tileSizeBox,
             processButton,
             progressBar,
@@ -214,6 +252,35 @@ public class WorkingHelloApplication extends Application {
         return root;
     }
     
+    /**
+     * Shows {@code filterName} on the proxy and then the full image, without saving it.
+     */
+    private void previewFilter(String filterName, boolean isAsync, int tileSize, ProgressBar progressBar) {
+        progressBar.setVisible(true);
+        progressBar.setProgress(-1);
+        preview.start(proxyImage, currentImage, FilterFactory.getFilter(filterName), tileSize, isAsync,
+                new ProgressivePreview.Listener() {
+                    @Override
+                    public void proxyReady(BufferedImage result, Image display, long elapsedMillis) {
+                        previewView.setImage(display);
+                        logArea.appendText("👀 " + filterName + " preview in " + elapsedMillis + " ms\n");
+                    }
+                    
+                    @Override
+                    public void fullReady(BufferedImage result, Image display, long elapsedMillis) {
+                        previewView.setImage(display);
+                        progressBar.setVisible(false);
+                        logArea.appendText("✅ " + filterName + " at full resolution in " + elapsedMillis + " ms\n");
+                    }
+                    
+                    @Override
+                    public void failed(Throwable error) {
+                        progressBar.setVisible(false);
+                        logArea.appendText("❌ Error previewing filter: " + error.getMessage() + "\n");
+                    }
+                });
+    }
+    
     private void loadDefaultImage() {
         try {
             URI resourceURI = getClass().getResource("/quino-al-mBQIfKlvowM-unsplash.jpg").toURI();
@@ -248,7 +315,13 @@ public class WorkingHelloApplication extends Application {
     private void loadImageFromPath(String imagePath) {
         Optional<BufferedImage> imageOpt = imageIO.readImage(imagePath);
         if (imageOpt.isPresent()) {
+            preview.cancel();
             currentImage = imageOpt.get();
+            proxyImage = ProgressivePreview.proxyOf(currentImage);
+            // The default image is loaded before the UI exists
+            if (previewView != null) {
+                previewView.setImage(null);
+            }
             currentImageName = Paths.get(imagePath).getFileName().toString();
         }
     }
@@ -264,8 +337,11 @@ public class WorkingHelloApplication extends Application {
     @Override
     public void stop() throws Exception {
         super.stop();
-        if (executorService != null) {
-            executorService.shutdown();
+        if (imageWriter != null) {
+            imageWriter.close();
+        }
+        if (computePool != null) {
+            computePool.close();
         }
         System.out.println("🛑 Application stopped gracefully");
     }
@@ -0,0 +1,237 @@
+package com.my.app.batch;
+
+import com.my.app.filters.FilterFactory;
+import com.my.app.io.DecodedImageCache;
+import com.my.app.io.ImageFileIO;
+import com.my.app.io.RawTiledImage;
+import com.my.app.io.WriteOptions;
+import com.my.app.processor.ComputePool;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.TileResultCache;
+import com.my.app.processor.TileSink;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line batch processing. Never touches JavaFX, so it runs on headless machines.
+ * <pre>
+ * BatchCli --filters Grayscale,Sepia --output out [--parallelism 8] [--memory 2g] [--format jpeg] photos/ "shots/**.jpg"
+ * </pre>
+ * Inputs are image files, directories (their image files, not recursive) or glob patterns.
+ * Outputs are named after their input's file name, so two inputs with the same name in
+ * different directories are rejected rather than overwriting each other's outputs.
+ * Exits with 0 when every operation completed, 1 when some did not and 2 on bad arguments.
+ * Rerunning into the same output directory only redoes operations whose output is missing or
+ * out of date.
+ */
+public final class BatchCli {
+    private static final String USAGE = "Usage: BatchCli --filters NAME[,NAME...] --output DIR"
+            + " [--parallelism N] [--memory SIZE|PERCENT] [--format png|jpeg|raw] [--png-level 0-9]"
+            + " [--jpeg-quality 0-1] INPUT...\n"
+            + "  INPUT: an image file, a directory or a glob such as 'photos/**/*.jpg'\n"
+            + "  Filters: " + String.join(", ", FilterFactory.getFilterNames());
+
+    private BatchCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        List<String> filterNames = null;
+        File outputDirectory = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        MemoryBudget budget = MemoryBudget.fromSystemProperty();
+        WriteOptions.Format format = WriteOptions.Format.PNG;
+        int pngLevel = WriteOptions.DEFAULT_PNG_LEVEL;
+        float jpegQuality = WriteOptions.DEFAULT_JPEG_QUALITY;
+        List<String> inputs = new ArrayList<>();
+        WriteOptions writeOptions;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--filters" -> filterNames = Arrays.stream(value(args, ++i).split(","))
+                            .map(String::trim).filter(name -> !name.isEmpty()).toList();
+                    case "--output" -> outputDirectory = new File(value(args, ++i));
+                    case "--parallelism" -> parallelism = Integer.parseInt(value(args, ++i));
+                    case "--memory" -> budget = MemoryBudget.parse(value(args, ++i));
+                    case "--format" -> format = WriteOptions.Format.parse(value(args, ++i));
+                    case "--png-level" -> pngLevel = Integer.parseInt(value(args, ++i));
+                    case "--jpeg-quality" -> jpegQuality = Float.parseFloat(value(args, ++i));
+                    case "--help", "-h" -> {
+                        System.out.println(USAGE);
+                        return 0;
+                    }
+                    default -> inputs.add(args[i]);
+                }
+            }
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("--parallelism must be positive");
+            }
+            if (filterNames == null || filterNames.isEmpty() || outputDirectory == null || inputs.isEmpty()) {
+                throw new IllegalArgumentException("--filters, --output and at least one input are required");
+            }
+            for (String name : filterNames) {
+                if (!FilterFactory.hasFilter(name)) {
+                    throw new IllegalArgumentException("Unknown filter: " + name);
+                }
+            }
+            writeOptions = switch (format) {
+                case PNG -> WriteOptions.png(pngLevel);
+                case JPEG -> WriteOptions.jpeg(jpegQuality);
+                case RAW -> WriteOptions.RAW;
+            };
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        List<File> inputFiles;
+        try {
+            inputFiles = resolveInputs(inputs);
+        } catch (IOException e) {
+            System.err.println("Unable to list inputs: " + e.getMessage());
+            return 2;
+        }
+        if (inputFiles.isEmpty()) {
+            System.err.println("No input images found");
+            return 2;
+        }
+        try {
+            BatchPipeline.checkOutputNames(inputFiles);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+
+        try (ComputePool pool = new ComputePool(parallelism)) {
+            // Each file is read once per run, so caching decoded images would only take memory
+            BatchEngine engine = new BatchEngine(new ImageFileIO(DecodedImageCache.disabled()),
+                    new ImageProcessor(pool, TileSink.NONE, TileResultCache.disabled()), budget,
+                    BatchEngine.DEFAULT_DECODE_THREADS, BatchEngine.DEFAULT_ENCODE_THREADS, writeOptions);
+            System.out.printf("Processing %d files with %s (parallelism %d, memory budget %s, output %s)%n",
+                    inputFiles.size(), String.join(", ", filterNames), parallelism, budget, writeOptions);
+
+            BatchResult result = engine.run(inputFiles, filterNames, outputDirectory, new ConsoleListener(), () -> false);
+
+            result.getStages().forEach(stage -> System.out.println("  " + stage));
+            System.out.printf("Completed %d of %d operations (%d already done) in %d ms%n",
+                    result.getCompletedOperations(), result.getTotalOperations(), result.getSkippedOperations(),
+                    result.getElapsedMillis());
+            return result.isComplete() ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Batch failed: " + e);
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Expands files, directories and glob patterns into a sorted, duplicate-free file list.
+     */
+    static List<File> resolveInputs(List<String> inputs) throws IOException {
+        Set<String> suffixes = Stream.concat(Arrays.stream(ImageIO.getReaderFileSuffixes()), Stream.of(RawTiledImage.EXTENSION))
+                .map(suffix -> suffix.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        Set<File> files = new TreeSet<>();
+
+        for (String input : inputs) {
+            int globStart = indexOfGlob(input);
+            if (globStart < 0) {
+                File file = new File(input);
+                if (file.isDirectory()) {
+                    try (Stream<Path> children = Files.list(file.toPath())) {
+                        children.filter(Files::isRegularFile)
+                                .filter(path -> suffixes.contains(suffix(path)))
+                                .forEach(path -> files.add(path.toFile()));
+                    }
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+
+            // Walk from the deepest directory that precedes the first wildcard
+            int separator = Math.max(input.lastIndexOf('/', globStart), input.lastIndexOf(File.separatorChar, globStart));
+            Path base = separator < 0 ? Paths.get(".") : Paths.get(input.substring(0, separator + 1));
+            String glob = input.substring(separator + 1);
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            // A leading **/ also matches no directories at all, as in most shells
+            PathMatcher topLevel = glob.startsWith("**/")
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3))
+                    : matcher;
+            if (!Files.isDirectory(base)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(base)) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> {
+                            Path relative = base.relativize(path);
+                            return matcher.matches(relative) || topLevel.matches(relative);
+                        })
+                        .forEach(path -> files.add(path.normalize().toFile()));
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String suffix(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static final class ConsoleListener implements BatchListener {
+        @Override
+        public void readFailed(File inputFile) {
+            System.err.println("Failed to read: " + inputFile);
+        }
+
+        @Override
+        public void saved(File inputFile, String outputFileName) {
+            System.out.println("Saved: " + outputFileName);
+        }
+
+        @Override
+        public void writeFailed(File inputFile, String outputFileName, IOException error) {
+            System.err.println("Failed to write " + outputFileName + ": " + error.getMessage());
+        }
+
+        @Override
+        public void progress(int completedOperations, int totalOperations) {
+            System.out.printf("[%d/%d]%n", completedOperations, totalOperations);
+        }
+    }
+}
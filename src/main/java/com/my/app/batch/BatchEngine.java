@@ -0,0 +1,93 @@
+package com.my.app.batch;
+
+import com.my.app.io.ImageOperations;
+import com.my.app.io.WriteOptions;
+import com.my.app.processor.ComputePool;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.TileResultCache;
+import com.my.app.processor.TileSink;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Applies filters to batches of image files without any UI. Files go through a pipeline of
+ * overlapping decode, filter and encode stages under a {@link MemoryBudget}; events are
+ * reported to a {@link BatchListener}.
+ * <p>
+ * The engine uses no JavaFX classes, so it can run on headless servers (see
+ * {@link BatchCli}). {@link BatchProcessor} adapts it to JavaFX.
+ */
+public class BatchEngine {
+    public static final int DEFAULT_DECODE_THREADS = 2;
+    public static final int DEFAULT_ENCODE_THREADS = 2;
+
+    private static final AtomicInteger RUNNER_COUNT = new AtomicInteger();
+
+    private final BatchPipeline pipeline;
+
+    /**
+     * An engine on the shared compute pool with the budget from
+     * {@link MemoryBudget#fromSystemProperty()}.
+     */
+    public BatchEngine(ImageOperations imageOperations) {
+        this(imageOperations, new ImageProcessor(ComputePool.shared(), TileSink.NONE, TileResultCache.disabled()),
+                MemoryBudget.fromSystemProperty(), DEFAULT_DECODE_THREADS, DEFAULT_ENCODE_THREADS);
+    }
+
+    public BatchEngine(ImageOperations imageOperations, ImageProcessor processor, MemoryBudget budget,
+                       int decodeThreads, int encodeThreads) {
+        this(imageOperations, processor, budget, decodeThreads, encodeThreads, WriteOptions.PNG);
+    }
+
+    /**
+     * An engine that encodes its outputs with {@code writeOptions}; the output file extension
+     * follows the format.
+     */
+    public BatchEngine(ImageOperations imageOperations, ImageProcessor processor, MemoryBudget budget,
+                       int decodeThreads, int encodeThreads, WriteOptions writeOptions) {
+        this.pipeline = new BatchPipeline(imageOperations, processor, budget, decodeThreads, encodeThreads,
+                writeOptions);
+    }
+
+    /**
+     * Runs a batch on the calling thread until it completes or {@code cancelled} becomes true.
+     *
+     * @throws IllegalArgumentException if two inputs have the same file name apart from the
+     *         extension, and so would write the same output files
+     * @throws Exception the first failure of any stage
+     */
+    public BatchResult run(List<File> inputFiles, List<String> filterNames, File outputDirectory,
+                           BatchListener listener, BooleanSupplier cancelled) throws Exception {
+        return pipeline.run(inputFiles, filterNames, outputDirectory, listener, cancelled);
+    }
+
+    /**
+     * Starts a batch on its own thread. Cancelling the returned future stops the batch after
+     * its in-flight items.
+     */
+    public CompletableFuture<BatchResult> submit(List<File> inputFiles, List<String> filterNames,
+                                                 File outputDirectory, BatchListener listener) {
+        CompletableFuture<BatchResult> result = new CompletableFuture<>();
+        Thread runner = new Thread(() -> {
+            try {
+                result.complete(run(inputFiles, filterNames, outputDirectory, listener, result::isCancelled));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, "batch-engine-" + RUNNER_COUNT.incrementAndGet());
+        runner.start();
+        return result;
+    }
+
+    public MemoryBudget getBudget() {
+        return pipeline.getBudget();
+    }
+
+    public WriteOptions getWriteOptions() {
+        return pipeline.getWriteOptions();
+    }
+}
@@ -0,0 +1,44 @@
+package com.my.app.batch;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives batch events. Methods are called from the batch's worker threads, so UI listeners
+ * must hand them over to their own thread.
+ */
+public interface BatchListener {
+    BatchListener NONE = new BatchListener() {
+    };
+
+    default void fileStarted(File inputFile) {
+    }
+
+    default void readFailed(File inputFile) {
+    }
+
+    default void filterStarted(File inputFile, String filterName) {
+    }
+
+    default void saved(File inputFile, String outputFileName) {
+    }
+
+    /**
+     * Called when an output could not be written; the operation does not count as completed.
+     */
+    default void writeFailed(File inputFile, String outputFileName, IOException error) {
+    }
+
+    /**
+     * Called for an operation whose output an earlier run already wrote, instead of running it.
+     */
+    default void skipped(File inputFile, String outputFileName) {
+    }
+
+    /**
+     * Called after each filter operation, including skipped ones and ones
+     * dropped for an unknown filter name.
+     */
+    default void progress(int completedOperations, int totalOperations) {
+    }
+}
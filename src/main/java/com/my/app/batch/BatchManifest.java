@@ -0,0 +1,201 @@
+package com.my.app.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of the operations a batch has completed in an output directory, so a rerun can skip
+ * outputs that are still valid.
+ * <p>
+ * Each line records one written output: the input's path, size, modification time and
+ * SHA-256 content hash, the filter's name and {@linkplain com.my.app.filters.ImageFilter#getIdentity()
+ * identity}, and the output's name and size. An operation is done when there is an entry for
+ * the input's current hash, the filter's identity and the output's name, and that file still
+ * has the recorded size. Inputs whose path, size and modification time match an entry reuse
+ * its hash instead of being read again, so checking an unchanged batch costs a stat per file.
+ * <p>
+ * The file is only appended to, one forced write per line, and every line carries a CRC32 of
+ * its contents: a line torn by a crash fails its check and is ignored, which only means that
+ * operation runs again. Later entries win over earlier ones. Deleting the file makes the next
+ * run redo everything.
+ */
+final class BatchManifest implements AutoCloseable {
+    static final String FILE_NAME = ".batch-manifest";
+    private static final String HEADER = "# image processor batch manifest v1\n";
+    private static final int FIELDS = 8;
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    private record Input(long size, long lastModified, String hash) {
+    }
+
+    private final File outputDirectory;
+    private final FileChannel journal;
+    private final Map<String, Input> inputs = new HashMap<>();
+    private final Map<String, Long> outputSizes = new HashMap<>();
+
+    private BatchManifest(File outputDirectory, FileChannel journal) {
+        this.outputDirectory = outputDirectory;
+        this.journal = journal;
+    }
+
+    /**
+     * Loads the manifest of {@code outputDirectory}, creating the directory and an empty
+     * manifest if needed, and opens it for appending.
+     */
+    static BatchManifest open(File outputDirectory) throws IOException {
+        Path path = outputDirectory.toPath().resolve(FILE_NAME);
+        Files.createDirectories(outputDirectory.toPath());
+        byte[] content = Files.exists(path) ? Files.readAllBytes(path) : new byte[0];
+
+        FileChannel journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        BatchManifest manifest = new BatchManifest(outputDirectory, journal);
+        try {
+            if (content.length == 0) {
+                manifest.append(HEADER);
+            } else if (content[content.length - 1] != '\n') {
+                // Terminate a torn last line so the next entry starts on its own
+                manifest.append("\n");
+            }
+            // Malformed bytes from a torn write decode to replacement characters and fail the CRC
+            new String(content, StandardCharsets.UTF_8).lines().forEach(manifest::load);
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns the SHA-256 of {@code inputFile}'s content, reusing the recorded hash when the
+     * file's size and modification time are unchanged.
+     */
+    String hash(File inputFile) throws IOException {
+        long size = inputFile.length();
+        long lastModified = inputFile.lastModified();
+        Input known = inputs.get(inputFile.getAbsolutePath());
+        if (known != null && known.size() == size && known.lastModified() == lastModified) {
+            return known.hash();
+        }
+
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(inputFile.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Whether an earlier run wrote {@code outputFileName} from content {@code inputHash} with
+     * a filter of identity {@code filterIdentity}, and the file is still intact.
+     */
+    boolean isDone(String inputHash, String filterIdentity, String outputFileName) {
+        Long outputSize = outputSizes.get(key(inputHash, filterIdentity, outputFileName));
+        File outputFile = new File(outputDirectory, outputFileName);
+        return outputSize != null && outputFile.isFile() && outputFile.length() == outputSize;
+    }
+
+    /**
+     * Durably records that {@code outputFileName} has been written. Does nothing if the file
+     * does not exist, so a failed write is retried by the next run.
+     */
+    void record(File inputFile, String inputHash, String filterName, String filterIdentity,
+                String outputFileName) throws IOException {
+        File outputFile = new File(outputDirectory, outputFileName);
+        if (!outputFile.isFile()) {
+            return;
+        }
+        String fields = String.join("\t", escape(inputFile.getAbsolutePath()), Long.toString(inputFile.length()),
+                Long.toString(inputFile.lastModified()), inputHash, escape(filterName), escape(filterIdentity),
+                escape(outputFileName), Long.toString(outputFile.length()));
+        append(crc(fields) + "\t" + fields + "\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private synchronized void append(String line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            journal.write(bytes);
+        }
+        journal.force(false);
+    }
+
+    private void load(String line) {
+        int tab = line.indexOf('\t');
+        if (line.startsWith("#") || tab < 0 || !line.substring(0, tab).equals(crc(line.substring(tab + 1)))) {
+            return;
+        }
+        String[] fields = line.substring(tab + 1).split("\t", -1);
+        if (fields.length != FIELDS) {
+            return;
+        }
+        try {
+            String hash = fields[3];
+            inputs.put(unescape(fields[0]), new Input(Long.parseLong(fields[1]), Long.parseLong(fields[2]), hash));
+            outputSizes.put(key(hash, unescape(fields[5]), unescape(fields[6])), Long.parseLong(fields[7]));
+        } catch (NumberFormatException e) {
+            // A damaged line that still passed its check; treat it like any other bad line
+        }
+    }
+
+    private static String key(String inputHash, String filterIdentity, String outputFileName) {
+        return inputHash + "\n" + filterIdentity + "\n" + outputFileName;
+    }
+
+    private static String crc(String fields) {
+        CRC32 crc = new CRC32();
+        crc.update(fields.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    /** Keeps tabs and line breaks in paths and identities from splitting a line. */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = switch (value.charAt(++i)) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> value.charAt(i);
+                };
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.my.app.batch;
+
+import com.my.app.filters.FilterFactory;
+import com.my.app.filters.ImageFilter;
+import com.my.app.io.BandWriter;
+import com.my.app.io.ImageHeader;
+import com.my.app.io.ImageOperations;
+import com.my.app.io.WriteOptions;
+import com.my.app.metrics.MetricsRegistry;
+import com.my.app.processor.CancellationToken;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.ProcessingResult;
+import com.my.app.processor.StreamingProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a batch as three overlapping stages connected by small bounded queues: decode workers
+ * read input files, the calling thread filters them through the tiled {@link ImageProcessor},
+ * and encode workers write the results. While one image is being filtered, the next ones are
+ * decoded and the previous results encoded.
+ * <p>
+ * Each filter run counts as one operation, completed once its output is written. A file that
+ * cannot be read, or an output that cannot be written, is reported and skipped. Cancellation stops every stage after its current
+ * item, except that a filter run in progress stops before its next tile and its result is dropped.
+ * <p>
+ * Before decoding a file, a decode worker reserves the file's estimated footprint in a
+ * {@link MemoryBudget}: the decoded image, its packed-int working copy and the filter outputs
+ * that can be queued or encoding at once. The estimate comes from the image header; the
+ * reservation is released when the file's last output has been written.
+ * <p>
+ * A file whose footprint exceeds the whole budget is not decoded at all when the output format
+ * can be written in bands: its decode worker streams it through a {@link StreamingProcessor}
+ * one filter at a time, reserving only the few bands that are in memory at once.
+ * <p>
+ * Completed operations are journaled in the output directory's {@link BatchManifest}. A rerun
+ * skips, without decoding, every operation whose output is still valid for the input's current
+ * content and the filter's identity, and counts it as completed.
+ */
+final class BatchPipeline {
+    private static final int QUEUE_CAPACITY = 2;
+    private static final long POLL_MILLIS = 100;
+
+    private final ImageOperations imageOperations;
+    private final ImageProcessor processor;
+    private final StreamingProcessor streamer;
+    private final MemoryBudget budget;
+    private final int decodeThreads;
+    private final int encodeThreads;
+    private final WriteOptions writeOptions;
+
+    BatchPipeline(ImageOperations imageOperations, ImageProcessor processor, MemoryBudget budget,
+                  int decodeThreads, int encodeThreads, WriteOptions writeOptions) {
+        if (decodeThreads <= 0 || encodeThreads <= 0) {
+            throw new IllegalArgumentException("Stage thread counts must be positive");
+        }
+        this.imageOperations = imageOperations;
+        this.processor = processor;
+        this.streamer = new StreamingProcessor(processor.getPool());
+        this.budget = budget;
+        this.decodeThreads = decodeThreads;
+        this.encodeThreads = encodeThreads;
+        this.writeOptions = writeOptions;
+    }
+
+    MemoryBudget getBudget() {
+        return budget;
+    }
+
+    WriteOptions getWriteOptions() {
+        return writeOptions;
+    }
+
+    /**
+     * Processes every input with every filter. Returns early, after in-flight items finish, once
+     * {@code cancelled} is true.
+     *
+     * @throws IllegalArgumentException if two inputs would write the same output files
+     * @throws Exception the first failure of any stage
+     */
+    BatchResult run(List<File> inputFiles, List<String> filterNames, File outputDirectory,
+                    BatchListener listener, BooleanSupplier cancelled) throws Exception {
+        return new Run(inputFiles, filterNames, outputDirectory, listener, cancelled).execute();
+    }
+
+    private record Decoded(File inputFile, String inputHash, List<String> filterNames, BufferedImage image,
+                           Reservation reservation) {
+    }
+
+    private record Filtered(File inputFile, String inputHash, String filterName, String filterIdentity,
+                            BufferedImage image, String outputFileName, Reservation reservation) {
+    }
+
+    private static final Decoded END_OF_DECODED = new Decoded(null, null, null, null, null);
+    private static final Filtered END_OF_FILTERED = new Filtered(null, null, null, null, null, null, null);
+
+    /**
+     * A file's share of the budget, released after its last filter operation.
+     */
+    private final class Reservation {
+        private final long bytes;
+        private final AtomicInteger remainingOperations;
+        private final Set<Reservation> open;
+
+        Reservation(long bytes, int operations, Set<Reservation> open) {
+            this.bytes = bytes;
+            this.remainingOperations = new AtomicInteger(operations);
+            this.open = open;
+            open.add(this);
+        }
+
+        void operationDone() {
+            if (remainingOperations.decrementAndGet() <= 0) {
+                release();
+            }
+        }
+
+        void release() {
+            if (open.remove(this)) {
+                budget.release(bytes);
+            }
+        }
+    }
+
+    private final class Run {
+        private final List<File> inputFiles;
+        private final List<String> filterNames;
+        private final File outputDirectory;
+        private final BatchListener listener;
+        private final BooleanSupplier cancelled;
+        private final int totalOperations;
+        private final CancellationToken stopToken = CancellationToken.of(this::stopped);
+
+        private final BlockingQueue<Decoded> decoded = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final BlockingQueue<Filtered> filtered = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicInteger nextFile = new AtomicInteger();
+        private final AtomicInteger runningDecoders = new AtomicInteger(decodeThreads);
+        private final AtomicInteger completedOperations = new AtomicInteger();
+        private final AtomicInteger skippedOperations = new AtomicInteger();
+        private final Set<Reservation> openReservations = ConcurrentHashMap.newKeySet();
+        private final List<File> unreadableFiles = new CopyOnWriteArrayList<>();
+
+        private final StageStats decodeStats = new StageStats("decode");
+        private final StageStats filterStats = new StageStats("filter");
+        private final StageStats encodeStats = new StageStats("encode");
+
+        private BatchManifest manifest;
+        private volatile boolean aborted;
+        private volatile Throwable failure;
+
+        Run(List<File> inputFiles, List<String> filterNames, File outputDirectory, BatchListener listener,
+            BooleanSupplier cancelled) {
+            checkOutputNames(inputFiles);
+            this.inputFiles = List.copyOf(inputFiles);
+            this.filterNames = List.copyOf(filterNames);
+            this.outputDirectory = outputDirectory;
+            this.listener = listener;
+            this.cancelled = cancelled;
+            this.totalOperations = inputFiles.size() * filterNames.size();
+        }
+
+        BatchResult execute() throws Exception {
+            long startTime = System.currentTimeMillis();
+            manifest = BatchManifest.open(outputDirectory);
+            ExecutorService decoders = Executors.newFixedThreadPool(decodeThreads, daemonThreads("batch-decode-"));
+            ExecutorService encoders = Executors.newFixedThreadPool(encodeThreads, daemonThreads("batch-encode-"));
+            try {
+                for (int i = 0; i < decodeThreads; i++) {
+                    decoders.execute(() -> guarded(this::decode));
+                }
+                for (int i = 0; i < encodeThreads; i++) {
+                    encoders.execute(() -> guarded(this::encode));
+                }
+                guarded(this::filter);
+            } finally {
+                // On success the workers have already drained; otherwise they stop after their current item
+                if (stopped()) {
+                    aborted = true;
+                }
+                decoders.shutdown();
+                encoders.shutdown();
+                awaitTermination(decoders);
+                awaitTermination(encoders);
+                // Files a stopped run never finished
+                List.copyOf(openReservations).forEach(Reservation::release);
+                manifest.close();
+            }
+
+            if (failure instanceof Exception e) {
+                throw e;
+            } else if (failure instanceof Error e) {
+                throw e;
+            }
+            return new BatchResult(totalOperations, completedOperations.get(), skippedOperations.get(), unreadableFiles,
+                    cancelled.getAsBoolean(), List.of(decodeStats, filterStats, encodeStats),
+                    System.currentTimeMillis() - startTime);
+        }
+
+        private void decode() throws InterruptedException, IOException {
+            try {
+                while (!stopped()) {
+                    int index = nextFile.getAndIncrement();
+                    if (index >= inputFiles.size()) {
+                        break;
+                    }
+                    File inputFile = inputFiles.get(index);
+                    String path = inputFile.getAbsolutePath();
+
+                    String inputHash = hash(inputFile);
+                    List<String> pending = pendingFilters(inputFile, inputHash);
+                    if (pending.isEmpty()) {
+                        continue;
+                    }
+
+                    // Formats without a readable header are charged once decoded instead
+                    Optional<ImageHeader> header = imageOperations.readHeader(path);
+                    if (header.isPresent() && BandWriter.supports(writeOptions)
+                            && footprintBytes(header.get(), pending.size()) > budget.getCapacityBytes()) {
+                        if (!stream(inputFile, inputHash, pending, header.get())) {
+                            break;
+                        }
+                        continue;
+                    }
+                    Reservation reservation = null;
+                    if (header.isPresent() && (reservation = reserve(header.get(), pending.size())) == null) {
+                        break;
+                    }
+                    listener.fileStarted(inputFile);
+
+                    long start = System.nanoTime();
+                    Optional<BufferedImage> image = imageOperations.readImage(path);
+                    if (image.isEmpty()) {
+                        if (reservation != null) {
+                            reservation.release();
+                        }
+                        unreadableFiles.add(inputFile);
+                        listener.readFailed(inputFile);
+                        continue;
+                    }
+                    decodeStats.record(megapixels(image.get()), System.nanoTime() - start);
+                    if (reservation == null && (reservation = reserve(headerOf(image.get()), pending.size())) == null) {
+                        break;
+                    }
+                    if (!put(decoded, new Decoded(inputFile, inputHash, pending, image.get(), reservation))) {
+                        break;
+                    }
+                }
+            } finally {
+                if (runningDecoders.decrementAndGet() == 0) {
+                    put(decoded, END_OF_DECODED);
+                }
+            }
+        }
+
+        private void filter() throws InterruptedException {
+            try {
+                Decoded item;
+                while ((item = take(decoded)) != null && item != END_OF_DECODED) {
+                    for (String filterName : item.filterNames()) {
+                        if (stopped()) {
+                            break;
+                        }
+                        ImageFilter filter = FilterFactory.getFilter(filterName);
+                        if (filter == null) {
+                            item.reservation().operationDone();
+                            completeOperation();
+                            continue;
+                        }
+                        listener.filterStarted(item.inputFile(), filterName);
+
+                        long start = System.nanoTime();
+                        ProcessingResult result = processor.processImage(item.image(),
+                                ImageProcessor.AUTO_TILE_SIZE, filter, true, stopToken);
+                        if (!result.isCompleted()) {
+                            break;
+                        }
+                        BufferedImage processedImage = result.getImage().get();
+                        filterStats.record(megapixels(processedImage), System.nanoTime() - start);
+
+                        if (!put(filtered, new Filtered(item.inputFile(), item.inputHash(), filterName,
+                                operationIdentity(filter), processedImage, outputFileName(item.inputFile(), filterName),
+                                item.reservation()))) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                put(filtered, END_OF_FILTERED);
+            }
+        }
+
+        private void encode() throws InterruptedException, IOException {
+            Filtered item;
+            while ((item = take(filtered)) != null) {
+                if (item == END_OF_FILTERED) {
+                    // Pass the marker on to the other encoders
+                    put(filtered, END_OF_FILTERED);
+                    return;
+                }
+                File outputFile = new File(outputDirectory, item.outputFileName());
+
+                long start = System.nanoTime();
+                try {
+                    imageOperations.writeImage(item.image(), outputFile, writeOptions);
+                } catch (IOException e) {
+                    item.reservation().operationDone();
+                    listener.writeFailed(item.inputFile(), item.outputFileName(), e);
+                    continue;
+                }
+                encodeStats.record(megapixels(item.image()), System.nanoTime() - start);
+                if (item.inputHash() != null) {
+                    manifest.record(item.inputFile(), item.inputHash(), item.filterName(), item.filterIdentity(),
+                            item.outputFileName());
+                }
+
+                item.reservation().operationDone();
+                MetricsRegistry.shared().recordBatchItem();
+                listener.saved(item.inputFile(), item.outputFileName());
+                completeOperation();
+            }
+        }
+
+        /**
+         * Runs the pending filters on a file too large to decode whole, each straight from the
+         * input file to its output. Returns false if the pipeline stopped first.
+         */
+        private boolean stream(File inputFile, String inputHash, List<String> pending, ImageHeader header)
+                throws InterruptedException, IOException {
+            listener.fileStarted(inputFile);
+            for (String filterName : pending) {
+                ImageFilter filter = FilterFactory.getFilter(filterName);
+                if (filter == null) {
+                    completeOperation();
+                    continue;
+                }
+                long bytes = streamer.footprintBytes(header.getWidth(), filter.getNeighborhoodRadius());
+                while (!budget.tryReserve(bytes, POLL_MILLIS)) {
+                    if (stopped()) {
+                        return false;
+                    }
+                }
+                String outputFileName = outputFileName(inputFile, filterName);
+                try {
+                    listener.filterStarted(inputFile, filterName);
+                    long start = System.nanoTime();
+                    streamer.process(inputFile, new File(outputDirectory, outputFileName), filter, writeOptions,
+                            stopToken);
+                    filterStats.record(header.getPixelCount() / 1_000_000.0, System.nanoTime() - start);
+                } catch (CancellationException e) {
+                    if (stopped()) {
+                        return false;
+                    }
+                    throw e;
+                } catch (IOException e) {
+                    listener.writeFailed(inputFile, outputFileName, e);
+                    continue;
+                } finally {
+                    budget.release(bytes);
+                }
+                if (inputHash != null) {
+                    manifest.record(inputFile, inputHash, filterName, operationIdentity(filter), outputFileName);
+                }
+                MetricsRegistry.shared().recordBatchItem();
+                listener.saved(inputFile, outputFileName);
+                completeOperation();
+                if (stopped()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The input's content hash, or null if it cannot be read; such inputs are never skipped. */
+        private String hash(File inputFile) {
+            try {
+                return manifest.hash(inputFile);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /** Filters still to run on the input; the others are reported as skipped and completed. */
+        private List<String> pendingFilters(File inputFile, String inputHash) {
+            if (inputHash == null) {
+                return filterNames;
+            }
+            List<String> pending = new ArrayList<>(filterNames.size());
+            for (String filterName : filterNames) {
+                ImageFilter filter = FilterFactory.getFilter(filterName);
+                String outputFileName = outputFileName(inputFile, filterName);
+                if (filter != null && manifest.isDone(inputHash, operationIdentity(filter), outputFileName)) {
+                    skippedOperations.incrementAndGet();
+                    listener.skipped(inputFile, outputFileName);
+                    completeOperation();
+                } else {
+                    pending.add(filterName);
+                }
+            }
+            return pending;
+        }
+
+        /** Waits for budget room for one file's operations; null if the pipeline stopped first. */
+        private Reservation reserve(ImageHeader header, int operations) throws InterruptedException {
+            long bytes = footprintBytes(header, operations);
+            while (!budget.tryReserve(bytes, POLL_MILLIS)) {
+                if (stopped()) {
+                    return null;
+                }
+            }
+            return new Reservation(bytes, operations, openReservations);
+        }
+
+        /**
+         * The decoded image, its packed-int working copy and the filter outputs that can be
+         * queued or encoding at once.
+         */
+        private long footprintBytes(ImageHeader header, int operations) {
+            int outputsInFlight = Math.min(operations, QUEUE_CAPACITY + encodeThreads + 1);
+            return header.getDecodedBytes() + header.getPixelCount() * Integer.BYTES * (1 + outputsInFlight);
+        }
+
+        private void completeOperation() {
+            listener.progress(completedOperations.incrementAndGet(), totalOperations);
+        }
+
+        private boolean stopped() {
+            return aborted || failure != null || cancelled.getAsBoolean();
+        }
+
+        /** Waits for queue space; false if the pipeline stopped first. */
+        private <T> boolean put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Waits for an item; null if the pipeline stopped first. */
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            T item;
+            while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (stopped()) {
+                    return null;
+                }
+            }
+            return item;
+        }
+
+        private void guarded(StageBody body) {
+            try {
+                body.run();
+            } catch (InterruptedException e) {
+                aborted = true;
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = t;
+                    }
+                }
+            }
+        }
+
+        private void awaitTermination(ExecutorService stage) throws InterruptedException {
+            while (!stage.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // Workers notice a stop within one poll interval
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws InterruptedException, IOException;
+    }
+
+    /**
+     * Outputs are named after their input's file name without its extension, so inputs such as
+     * {@code a/img.jpg} and {@code b/img.png} would overwrite each other's outputs.
+     *
+     * @throws IllegalArgumentException naming the first two such inputs
+     */
+    static void checkOutputNames(List<File> inputFiles) {
+        Map<String, File> byBaseName = new HashMap<>();
+        for (File inputFile : inputFiles) {
+            File other = byBaseName.putIfAbsent(baseName(inputFile), inputFile);
+            if (other != null && !other.getAbsoluteFile().equals(inputFile.getAbsoluteFile())) {
+                throw new IllegalArgumentException("Inputs " + other + " and " + inputFile
+                        + " would write the same output files; rename one of them or process them separately");
+            }
+        }
+    }
+
+    private static String baseName(File inputFile) {
+        return inputFile.getName().replaceFirst("[.][^.]+$", "");
+    }
+
+    private String outputFileName(File inputFile, String filterName) {
+        return baseName(inputFile) + "_" + filterName.toLowerCase().replace(" ", "_") + "."
+                + writeOptions.getFormat().getExtension();
+    }
+
+    /** What an output depends on besides its input: the filter and, for lossy formats, the encoding. */
+    private String operationIdentity(ImageFilter filter) {
+        return filter.getIdentity() + " -> " + writeOptions;
+    }
+
+    private static ImageHeader headerOf(BufferedImage image) {
+        int bytesPerPixel = Math.max(1, (image.getColorModel().getPixelSize() + 7) / 8);
+        return new ImageHeader(image.getWidth(), image.getHeight(), bytesPerPixel);
+    }
+
+    private static double megapixels(BufferedImage image) {
+        return (double) image.getWidth() * image.getHeight() / 1_000_000;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,26 +1,41 @@
 package com.my.app.batch;
 
-import com.my.app.filters.FilterFactory;
-import com.my.app.filters.ImageFilter;
+import com.my.app.io.DecodedImageCache;
+import com.my.app.io.ImageFileIO;
 import com.my.app.io.ImageOperations;
-import com.my.app.processor.ImageProcessor;
 import javafx.concurrent.Task;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.application.Platform;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * JavaFX front end for {@link BatchEngine}: runs a batch as a {@link Task} that reports into a
+ * progress bar and log area.
+ */
 public class BatchProcessor {
-    private final ImageOperations imageOperations;
-    private final ImageProcessor processor;
+    private final BatchEngine engine;
+    private final DecodedImageCache imageCache;
     
+    /**
+     * Reads through {@code imageOperations}; with {@link ImageFileIO}, files decoded by an
+     * earlier batch or by the viewer come from its decoded-image cache.
+     */
     public BatchProcessor(ImageOperations imageOperations) {
-        this.imageOperations = imageOperations;
-        this.processor = new ImageProcessor();
+        this(new BatchEngine(imageOperations),
+                imageOperations instanceof ImageFileIO fileIO ? fileIO.getCache() : null);
+    }
+    
+    public BatchProcessor(BatchEngine engine) {
+        this(engine, null);
+    }
+    
+    private BatchProcessor(BatchEngine engine, DecodedImageCache imageCache) {
+        this.engine = engine;
+        this.imageCache = imageCache;
     }
     
     public Task<Void> createBatchTask(List<File> inputFiles, List<String> filterNames, 
@@ -29,46 +44,53 @@ public class BatchProcessor {
         return new Task<Void>() {
             @Override
             protected Void call() throws Exception {
-                int totalOperations = inputFiles.size() * filterNames.size();
-                int completedOperations = 0;
-                
-                for (File inputFile : inputFiles) {
-                    if (isCancelled()) break;
-                    
-                    Platform.runLater(() -> logArea.appendText("Processing: " + inputFile.getName() + "\n"));
-                    
-                    Optional<BufferedImage> imageOpt = imageOperations.readImage(inputFile.getAbsolutePath());
-                    if (imageOpt.isEmpty()) {
+                BatchListener listener = new BatchListener() {
+                    @Override
+                    public void fileStarted(File inputFile) {
+                        Platform.runLater(() -> logArea.appendText("Processing: " + inputFile.getName() + "\n"));
+                    }
+
+                    @Override
+                    public void readFailed(File inputFile) {
                         Platform.runLater(() -> logArea.appendText("Failed to read: " + inputFile.getName() + "\n"));
-                        continue;
                     }
-                    
-                    BufferedImage originalImage = imageOpt.get();
-                    String baseName = inputFile.getName().replaceFirst("[.][^.]+$", "");
-                    
-                    for (String filterName : filterNames) {
-                        if (isCancelled()) break;
-                        
-                        ImageFilter filter = FilterFactory.getFilter(filterName);
-                        if (filter != null) {
-                            Platform.runLater(() -> logArea.appendText("  Applying " + filterName + "...\n"));
-                            
-                            BufferedImage processedImage = processor.processImage(originalImage, 40, filter, true);
-                            
-                            String outputFileName = baseName + "_" + filterName.toLowerCase().replace(" ", "_") + ".png";
-                            File outputFile = new File(outputDirectory, outputFileName);
-                            
-                            imageOperations.sendImage(processedImage, outputFile.getAbsolutePath());
-                            Platform.runLater(() -> logArea.appendText("  Saved: " + outputFileName + "\n"));
-                        }
-                        
-                        completedOperations++;
+
+                    @Override
+                    public void filterStarted(File inputFile, String filterName) {
+                        Platform.runLater(() -> logArea.appendText("  Applying " + filterName + " to " + inputFile.getName() + "...\n"));
+                    }
+
+                    @Override
+                    public void saved(File inputFile, String outputFileName) {
+                        Platform.runLater(() -> logArea.appendText("  Saved: " + outputFileName + "\n"));
+                    }
+
+                    @Override
+                    public void writeFailed(File inputFile, String outputFileName, IOException error) {
+                        Platform.runLater(() -> logArea.appendText("  Failed to save " + outputFileName + ": " + error.getMessage() + "\n"));
+                    }
+
+                    @Override
+                    public void progress(int completedOperations, int totalOperations) {
                         final double progress = (double) completedOperations / totalOperations;
                         Platform.runLater(() -> progressBar.setProgress(progress));
                     }
-                }
+                };
+
+                Platform.runLater(() -> logArea.appendText("Memory budget: " + engine.getBudget() + "\n"));
+                BatchResult result = engine.run(inputFiles, filterNames, outputDirectory, listener, this::isCancelled);
                 
-                Platform.runLater(() -> logArea.appendText("Batch processing completed!\n"));
+                Platform.runLater(() -> {
+                    if (result.getSkippedOperations() > 0) {
+                        logArea.appendText("Skipped " + result.getSkippedOperations()
+                                + " operations already completed by an earlier run\n");
+                    }
+                    result.getStages().forEach(stage -> logArea.appendText("  " + stage + "\n"));
+                    if (imageCache != null) {
+                        logArea.appendText("Image cache: " + imageCache.getStats() + "\n");
+                    }
+                    logArea.appendText("Batch processing completed!\n");
+                });
                 return null;
             }
         };
@@ -0,0 +1,63 @@
+package com.my.app.batch;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Outcome of a batch run.
+ */
+public final class BatchResult {
+    private final int totalOperations;
+    private final int completedOperations;
+    private final int skippedOperations;
+    private final List<File> unreadableFiles;
+    private final boolean cancelled;
+    private final List<StageStats> stages;
+    private final long elapsedMillis;
+
+    BatchResult(int totalOperations, int completedOperations, int skippedOperations, List<File> unreadableFiles, boolean cancelled,
+                List<StageStats> stages, long elapsedMillis) {
+        this.totalOperations = totalOperations;
+        this.completedOperations = completedOperations;
+        this.skippedOperations = skippedOperations;
+        this.unreadableFiles = List.copyOf(unreadableFiles);
+        this.cancelled = cancelled;
+        this.stages = List.copyOf(stages);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getTotalOperations() {
+        return totalOperations;
+    }
+
+    public int getCompletedOperations() {
+        return completedOperations;
+    }
+
+    /** Operations an earlier run had already completed; included in the completed count. */
+    public int getSkippedOperations() {
+        return skippedOperations;
+    }
+
+    public List<File> getUnreadableFiles() {
+        return unreadableFiles;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Decode, filter and encode statistics, in that order. */
+    public List<StageStats> getStages() {
+        return stages;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /** Whether every operation completed. */
+    public boolean isComplete() {
+        return completedOperations == totalOperations;
+    }
+}
@@ -0,0 +1,105 @@
+package com.my.app.batch;
+
+import java.util.Locale;
+
+/**
+ * Bounds the bytes of image data a batch keeps alive at once. Work reserves its estimated
+ * footprint before it starts and releases it when done; a reservation larger than the whole
+ * budget is still admitted once nothing else is reserved, so oversized images run alone
+ * instead of never.
+ * <p>
+ * {@link #fromSystemProperty()} reads {@code imageprocessor.batchMemory}: either a size such as
+ * {@code 2g}, {@code 512m} or a plain byte count, or a share of the maximum heap such as
+ * {@code 60%}. The default is half the heap.
+ */
+public final class MemoryBudget {
+    public static final String PROPERTY = "imageprocessor.batchMemory";
+    private static final String DEFAULT_SPEC = "50%";
+
+    private final long capacityBytes;
+    private long reservedBytes;
+    private int reservations;
+
+    private MemoryBudget(long capacityBytes) {
+        if (capacityBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + capacityBytes);
+        }
+        this.capacityBytes = capacityBytes;
+    }
+
+    public static MemoryBudget ofBytes(long capacityBytes) {
+        return new MemoryBudget(capacityBytes);
+    }
+
+    public static MemoryBudget ofHeapFraction(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Heap fraction must be in (0, 1]: " + fraction);
+        }
+        return new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * fraction));
+    }
+
+    public static MemoryBudget fromSystemProperty() {
+        return parse(System.getProperty(PROPERTY, DEFAULT_SPEC));
+    }
+
+    /**
+     * Parses a budget written as {@code 60%} of the maximum heap, or as a byte count with an
+     * optional {@code k}, {@code m} or {@code g} suffix.
+     */
+    public static MemoryBudget parse(String spec) {
+        String value = spec.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (value.endsWith("%")) {
+                return ofHeapFraction(Double.parseDouble(value.substring(0, value.length() - 1)) / 100);
+            }
+            long unit = switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+                case 'k' -> 1L << 10;
+                case 'm' -> 1L << 20;
+                case 'g' -> 1L << 30;
+                default -> 1;
+            };
+            String digits = unit == 1 ? value : value.substring(0, value.length() - 1);
+            return ofBytes(Math.multiplyExact(Long.parseLong(digits), unit));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid memory budget: " + spec, e);
+        }
+    }
+
+    /**
+     * Reserves {@code bytes}, waiting up to {@code timeoutMillis} for enough to be released.
+     *
+     * @return whether the reservation was made
+     */
+    public synchronized boolean tryReserve(long bytes, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (reservations > 0 && reservedBytes + bytes > capacityBytes) {
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            wait(remainingMillis);
+        }
+        reservedBytes += bytes;
+        reservations++;
+        return true;
+    }
+
+    public synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+        reservations--;
+        notifyAll();
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f MiB", capacityBytes / (double) (1 << 20));
+    }
+}
@@ -0,0 +1,58 @@
+package com.my.app.batch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Throughput of one batch pipeline stage. Busy time is summed over the stage's threads, so
+ * the rates describe the stage itself, independent of how long it waited for its neighbours.
+ */
+public final class StageStats {
+    private final String name;
+    private final AtomicLong items = new AtomicLong();
+    private final DoubleAdder megapixels = new DoubleAdder();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    StageStats(String name) {
+        this.name = name;
+    }
+
+    void record(double itemMegapixels, long nanos) {
+        items.incrementAndGet();
+        megapixels.add(itemMegapixels);
+        busyNanos.addAndGet(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public double getMegapixels() {
+        return megapixels.sum();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    public double getItemsPerSecond() {
+        long nanos = busyNanos.get();
+        return nanos == 0 ? 0 : items.get() * 1e9 / nanos;
+    }
+
+    public double getMegapixelsPerSecond() {
+        long nanos = busyNanos.get();
+        return nanos == 0 ? 0 : megapixels.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d items, %.1f MP in %.2f s busy (%.2f items/s, %.1f MP/s)",
+                name, getItems(), getMegapixels(), getBusyNanos() / 1e9, getItemsPerSecond(),
+                getMegapixelsPerSecond());
+    }
+}
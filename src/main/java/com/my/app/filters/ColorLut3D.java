@@ -0,0 +1,115 @@
+package com.my.app.filters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A 3D color lookup table sampling an RGB-to-RGB transform on a 52x52x52 grid, with
+ * trilinear interpolation in between.
+ * <p>
+ * Grid nodes sit on every 5th channel value (0, 5, ... 255), so node colors are exact and
+ * interpolation needs only integer arithmetic. Tables are expensive to build and are kept in a
+ * small LRU cache keyed by the caller's parameters, see {@link #cached(String, IntUnaryOperator)}.
+ */
+public final class ColorLut3D {
+    private static final int STEP = 5;
+    private static final int SIZE = 255 / STEP + 1;
+    private static final int WEIGHT_TOTAL = STEP * STEP * STEP;
+    private static final int MAX_CACHED_TABLES = 16;
+
+    private static final Map<String, ColorLut3D> CACHE = new LinkedHashMap<>(MAX_CACHED_TABLES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ColorLut3D> eldest) {
+            return size() > MAX_CACHED_TABLES;
+        }
+    };
+
+    private final int[] table;
+
+    private ColorLut3D(int[] table) {
+        this.table = table;
+    }
+
+    /**
+     * Samples {@code transform}, which maps packed 0xRRGGBB to packed 0xRRGGBB.
+     */
+    public static ColorLut3D build(IntUnaryOperator transform) {
+        int[] table = new int[SIZE * SIZE * SIZE];
+        for (int r = 0; r < SIZE; r++) {
+            for (int g = 0; g < SIZE; g++) {
+                for (int b = 0; b < SIZE; b++) {
+                    int rgb = (r * STEP << 16) | (g * STEP << 8) | (b * STEP);
+                    table[(r * SIZE + g) * SIZE + b] = transform.applyAsInt(rgb) & 0xFFFFFF;
+                }
+            }
+        }
+        return new ColorLut3D(table);
+    }
+
+    /**
+     * Returns the table for {@code key}, building it from {@code transform} on a miss. The key
+     * must identify the transform and all of its parameters.
+     */
+    public static ColorLut3D cached(String key, IntUnaryOperator transform) {
+        synchronized (CACHE) {
+            ColorLut3D lut = CACHE.get(key);
+            if (lut != null) {
+                return lut;
+            }
+        }
+        // Built outside the lock; a concurrent miss just builds an identical table
+        ColorLut3D lut = build(transform);
+        synchronized (CACHE) {
+            CACHE.putIfAbsent(key, lut);
+            return CACHE.get(key);
+        }
+    }
+
+    public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        int[] table = this.table;
+        for (int i = 0; i < length; i++) {
+            int rgb = src[srcIndex + i];
+            int r = (rgb >> 16) & 0xFF;
+            int g = (rgb >> 8) & 0xFF;
+            int b = rgb & 0xFF;
+
+            // Cell origin (clamped so 255 uses the last cell) and offset within the cell
+            int ri = Math.min(r / STEP, SIZE - 2);
+            int gi = Math.min(g / STEP, SIZE - 2);
+            int bi = Math.min(b / STEP, SIZE - 2);
+            int fr = r - ri * STEP;
+            int fg = g - gi * STEP;
+            int fb = b - bi * STEP;
+
+            int base = (ri * SIZE + gi) * SIZE + bi;
+            int c000 = table[base];
+            int c001 = table[base + 1];
+            int c010 = table[base + SIZE];
+            int c011 = table[base + SIZE + 1];
+            int c100 = table[base + SIZE * SIZE];
+            int c101 = table[base + SIZE * SIZE + 1];
+            int c110 = table[base + SIZE * SIZE + SIZE];
+            int c111 = table[base + SIZE * SIZE + SIZE + 1];
+
+            int w000 = (STEP - fr) * (STEP - fg) * (STEP - fb);
+            int w001 = (STEP - fr) * (STEP - fg) * fb;
+            int w010 = (STEP - fr) * fg * (STEP - fb);
+            int w011 = (STEP - fr) * fg * fb;
+            int w100 = fr * (STEP - fg) * (STEP - fb);
+            int w101 = fr * (STEP - fg) * fb;
+            int w110 = fr * fg * (STEP - fb);
+            int w111 = fr * fg * fb;
+
+            int out = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int sum = w000 * ((c000 >> shift) & 0xFF) + w001 * ((c001 >> shift) & 0xFF)
+                        + w010 * ((c010 >> shift) & 0xFF) + w011 * ((c011 >> shift) & 0xFF)
+                        + w100 * ((c100 >> shift) & 0xFF) + w101 * ((c101 >> shift) & 0xFF)
+                        + w110 * ((c110 >> shift) & 0xFF) + w111 * ((c111 >> shift) & 0xFF);
+                out |= ((sum + WEIGHT_TOTAL / 2) / WEIGHT_TOTAL) << shift;
+            }
+            dst[dstIndex + i] = out;
+        }
+    }
+}
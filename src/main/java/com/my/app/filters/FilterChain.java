@@ -0,0 +1,142 @@
+package com.my.app.filters;
+
+import com.my.app.image.PixelBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Applies several filters in sequence. {@link #compile(List)} fuses every run of consecutive
+ * {@link PointOp} filters into one stage that maps each row through all of them, so the run
+ * costs a single pass over the pixels and no intermediate images.
+ */
+public final class FilterChain extends RasterFilter {
+    private final List<ImageFilter> stages;
+    private final int neighborhoodRadius;
+
+    private FilterChain(List<ImageFilter> stages) {
+        this.stages = List.copyOf(stages);
+        int radius = 0;
+        for (ImageFilter stage : stages) {
+            radius += stage.getNeighborhoodRadius();
+        }
+        this.neighborhoodRadius = radius;
+    }
+
+    /**
+     * Compiles {@code filters} into the fewest stages. A chain that reduces to one stage is
+     * returned as that stage, so a single filter comes back unchanged.
+     */
+    public static ImageFilter compile(List<? extends ImageFilter> filters) {
+        if (filters.isEmpty()) {
+            throw new IllegalArgumentException("A filter chain needs at least one filter");
+        }
+
+        List<ImageFilter> stages = new ArrayList<>();
+        List<PointOp> run = new ArrayList<>();
+        for (ImageFilter filter : filters) {
+            if (filter instanceof PointOp op) {
+                run.add(op);
+            } else {
+                flush(run, stages);
+                stages.add(filter);
+            }
+        }
+        flush(run, stages);
+
+        return stages.size() == 1 ? stages.get(0) : new FilterChain(stages);
+    }
+
+    private static void flush(List<PointOp> run, List<ImageFilter> stages) {
+        if (run.size() == 1) {
+            stages.add((ImageFilter) run.get(0));
+        } else if (run.size() > 1) {
+            stages.add(new FusedPointFilter(run));
+        }
+        run.clear();
+    }
+
+    @Override
+    public void apply(PixelBuffer src, PixelBuffer dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        PixelBuffer scratch = null;
+
+        // Stages alternate between dst and scratch so the last one lands in dst
+        PixelBuffer from = src;
+        for (int i = 0; i < stages.size(); i++) {
+            boolean toDst = (stages.size() - 1 - i) % 2 == 0;
+            if (!toDst && scratch == null) {
+                scratch = PixelBuffer.create(width, height);
+            }
+            // Keep every stage at the source's frame position for position-dependent filters
+            PixelBuffer to = (toDst ? dst : scratch).inFrameOf(src);
+            stages.get(i).apply(from, to);
+            from = to;
+        }
+    }
+
+    @Override
+    public int getNeighborhoodRadius() {
+        return neighborhoodRadius;
+    }
+
+    @Override
+    public String getIdentity() {
+        StringJoiner identity = new StringJoiner(", ", getClass().getName() + "[", "]");
+        stages.forEach(stage -> identity.add(stage.getIdentity()));
+        return identity.toString();
+    }
+
+    /** The stages' metric names joined with {@code +}, with fused stages spelled out. */
+    @Override
+    public String getMetricName() {
+        StringJoiner name = new StringJoiner("+");
+        stages.forEach(stage -> name.add(stage.getMetricName()));
+        return name.toString();
+    }
+
+    public List<ImageFilter> getStages() {
+        return stages;
+    }
+
+    /**
+     * A run of point operations applied row by row: the first maps source into destination,
+     * the rest transform the destination row in place while it is still in cache.
+     */
+    static final class FusedPointFilter extends PointFilter {
+        private final PointOp[] ops;
+
+        FusedPointFilter(List<PointOp> ops) {
+            this.ops = ops.toArray(new PointOp[0]);
+        }
+
+        @Override
+        public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                             int x, int y, int width, int height) {
+            ops[0].applyRow(src, srcIndex, dst, dstIndex, length, x, y, width, height);
+            for (int i = 1; i < ops.length; i++) {
+                ops[i].applyRow(dst, dstIndex, dst, dstIndex, length, x, y, width, height);
+            }
+        }
+
+        @Override
+        public String getIdentity() {
+            StringJoiner identity = new StringJoiner(", ", getClass().getName() + "[", "]");
+            for (PointOp op : ops) {
+                identity.add(op instanceof ImageFilter filter ? filter.getIdentity() : op.getClass().getName());
+            }
+            return identity.toString();
+        }
+
+        @Override
+        public String getMetricName() {
+            StringJoiner name = new StringJoiner("+");
+            for (PointOp op : ops) {
+                name.add(op instanceof ImageFilter filter ? filter.getMetricName() : op.getClass().getSimpleName());
+            }
+            return name.toString();
+        }
+    }
+}
@@ -4,12 +4,13 @@ import com.my.app.filters.impl.*;
 import java.util.*;
 
 public class FilterFactory {
+    private static final int DEFAULT_BLUR_RADIUS = 1;
     private static final Map<String, ImageFilter> FILTER_REGISTRY = new LinkedHashMap<>();
     
     static {
         FILTER_REGISTRY.put("Grayscale", new GreyScaleFilter());
         FILTER_REGISTRY.put("Sepia", new SepiaFilter());
-        FILTER_REGISTRY.put("Blur", new BlurFilter());
+        FILTER_REGISTRY.put("Blur", BlurFilter.forRadius(DEFAULT_BLUR_RADIUS));
         FILTER_REGISTRY.put("Sharpen", new SharpenFilter());
         FILTER_REGISTRY.put("Edge Detection", new EdgeDetectionFilter());
         FILTER_REGISTRY.put("Emboss", new EmbossFilter());
@@ -25,6 +26,29 @@ public class FilterFactory {
         return FILTER_REGISTRY.get(name);
     }
     
+    /**
+     * Creates a blur of any radius, choosing the Gaussian or box engine by radius.
+     */
+    public static ImageFilter createBlur(int radius) {
+        return BlurFilter.forRadius(radius);
+    }
+    
+    /**
+     * Builds one filter that applies the named filters in order, with consecutive per-pixel
+     * filters fused into a single pass.
+     */
+    public static ImageFilter getFilterChain(List<String> names) {
+        List<ImageFilter> filters = new ArrayList<>();
+        for (String name : names) {
+            ImageFilter filter = FILTER_REGISTRY.get(name);
+            if (filter == null) {
+                throw new IllegalArgumentException("Unknown filter: " + name);
+            }
+            filters.add(filter);
+        }
+        return FilterChain.compile(filters);
+    }
+    
     public static Set<String> getFilterNames() {
         return FILTER_REGISTRY.keySet();
     }
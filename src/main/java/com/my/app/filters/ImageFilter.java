@@ -1,7 +1,57 @@
 package com.my.app.filters;
 
+import com.my.app.image.PixelBuffer;
+
 import java.awt.image.BufferedImage;
 
 public interface ImageFilter {
     BufferedImage apply(BufferedImage image);
+
+    /**
+     * Raster-level path: filters the packed RGB pixels of {@code src} into {@code dst}, which
+     * has the same dimensions and must not overlap {@code src}. Every pixel of {@code dst} is
+     * written.
+     * <p>
+     * The default implementation round-trips through {@link #apply(BufferedImage)}; filters
+     * with a native raster path override it.
+     */
+    default void apply(PixelBuffer src, PixelBuffer dst) {
+        BufferedImage result = apply(src.toImage());
+        PixelBuffer.of(result).copyTo(dst);
+    }
+
+    /**
+     * The image {@link #apply(BufferedImage)} returns for {@code pixels}, the whole-image output
+     * of the raster path. The default wraps them as they are; filters whose images are not
+     * packed RGB override it.
+     */
+    default BufferedImage toImage(PixelBuffer pixels) {
+        return pixels.toImage();
+    }
+
+    /**
+     * How far, in pixels, an output pixel's value can depend on source pixels around it.
+     * A tile filtered together with this much surrounding source yields exactly the pixels a
+     * whole-image run would. Point filters return 0.
+     */
+    default int getNeighborhoodRadius() {
+        return 0;
+    }
+
+    /**
+     * Names what this filter computes, including every parameter that affects its output, so
+     * filters with equal identities produce equal pixels from equal input. Parameterless
+     * filters keep the default, their class name.
+     */
+    default String getIdentity() {
+        return getClass().getName();
+    }
+
+    /**
+     * Names this filter in metrics. Unlike {@link #getIdentity()} it leaves out parameters, so
+     * one name covers every setting of a filter. The default is the simple class name.
+     */
+    default String getMetricName() {
+        return getClass().getSimpleName();
+    }
 }
@@ -0,0 +1,21 @@
+package com.my.app.filters;
+
+import com.my.app.image.PixelBuffer;
+
+/**
+ * Base class for filters that are a pure {@link PointOp}: the raster path simply maps every
+ * row, which also makes the filter safe to run in place. Rows are reported at their
+ * position in the source buffer's frame.
+ */
+public abstract class PointFilter extends RasterFilter implements PointOp {
+
+    @Override
+    public void apply(PixelBuffer src, PixelBuffer dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        for (int y = 0; y < height; y++) {
+            applyRow(src.getData(), src.index(0, y), dst.getData(), dst.index(0, y), width,
+                    src.getFrameX(), src.getFrameY() + y, src.getFrameWidth(), src.getFrameHeight());
+        }
+    }
+}
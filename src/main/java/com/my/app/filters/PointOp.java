@@ -0,0 +1,18 @@
+package com.my.app.filters;
+
+/**
+ * A per-pixel color transform that can run a row at a time, which lets consecutive point
+ * operations be fused into a single pass over the image.
+ */
+public interface PointOp {
+
+    /**
+     * Maps {@code length} packed RGB pixels from {@code src[srcIndex]} into {@code dst[dstIndex]}.
+     * The two ranges may be identical (in-place), but must not otherwise overlap.
+     * <p>
+     * The pixels are row {@code y}, columns {@code x} to {@code x + length - 1}, of a
+     * {@code width} x {@code height} frame; only position-dependent operations look at these.
+     */
+    void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                  int x, int y, int width, int height);
+}
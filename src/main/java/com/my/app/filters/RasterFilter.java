@@ -0,0 +1,24 @@
+package com.my.app.filters;
+
+import com.my.app.image.PixelBuffer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Base class for filters implemented directly on packed RGB pixels.
+ * {@link #apply(BufferedImage)} wraps the source without copying where possible and
+ * writes into a fresh TYPE_INT_RGB image.
+ */
+public abstract class RasterFilter implements ImageFilter {
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        PixelBuffer src = PixelBuffer.of(image);
+        PixelBuffer dst = PixelBuffer.create(image.getWidth(), image.getHeight());
+        apply(src, dst);
+        return dst.toImage();
+    }
+
+    @Override
+    public abstract void apply(PixelBuffer src, PixelBuffer dst);
+}
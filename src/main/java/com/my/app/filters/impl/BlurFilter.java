@@ -1,55 +1,110 @@
 package com.my.app.filters.impl;
 
-import com.my.app.filters.ImageFilter;
-import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
+import com.my.app.filters.RasterFilter;
+import com.my.app.image.PixelBuffer;
 
-public class BlurFilter implements ImageFilter {
-    private final int intensity;
+/**
+ * Gaussian blur of any radius, run as two separable passes.
+ * <p>
+ * {@link Engine#GAUSSIAN} convolves with the true (fixed-point) kernel and costs O(radius)
+ * per pixel. {@link Engine#BOX} approximates the same Gaussian with three successive box
+ * blurs computed from running sums, which costs the same per pixel whatever the radius.
+ * Edge pixels are replicated, so the whole image is blurred.
+ */
+public class BlurFilter extends RasterFilter {
+    public enum Engine { GAUSSIAN, BOX }
+
+    /** Largest radius for which {@link #forRadius(int)} still picks the exact Gaussian. */
+    public static final int BOX_RADIUS_THRESHOLD = 10;
+    private static final int BOX_PASSES = 3;
+
+    private final int radius;
+    private final double sigma;
+    private final Engine engine;
+    private final int[] boxes;
     
     public BlurFilter() {
-        this.intensity = 3;
+        this(1);
     }
     
-    public BlurFilter(int intensity) {
-        this.intensity = Math.max(1, Math.min(intensity, 9));
+    public BlurFilter(int radius) {
+        this(radius, Engine.GAUSSIAN);
     }
     
-    @Override
-    public BufferedImage apply(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        BufferedImage blurredImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        
-        float[] matrix = createGaussianKernel(intensity);
-        Kernel kernel = new Kernel(intensity, intensity, matrix);
-        ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        
-        op.filter(originalImage, blurredImage);
-        return blurredImage;
+    public BlurFilter(int radius, Engine engine) {
+        this.radius = Math.max(0, radius);
+        // Same radius-to-sigma ratio as the original (2r + 1) / 3 kernel
+        this.sigma = (2 * this.radius + 1) / 3.0;
+        this.engine = engine;
+        this.boxes = engine == Engine.BOX
+                ? SeparableBlur.boxRadii(SeparableBlur.truncatedSigma(this.radius, sigma), BOX_PASSES)
+                : null;
+    }
+
+    /**
+     * Returns a blur of the given radius using whichever engine is faster for it.
+     */
+    public static BlurFilter forRadius(int radius) {
+        return new BlurFilter(radius, radius > BOX_RADIUS_THRESHOLD ? Engine.BOX : Engine.GAUSSIAN);
     }
     
-    private float[] createGaussianKernel(int size) {
-        float[] kernel = new float[size * size];
-        float sum = 0.0f;
-        int center = size / 2;
-        float sigma = size / 3.0f;
-        
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                int x = i - center;
-                int y = j - center;
-                kernel[i * size + j] = (float) Math.exp(-(x * x + y * y) / (2 * sigma * sigma));
-                sum += kernel[i * size + j];
+    @Override
+    public void apply(PixelBuffer src, PixelBuffer dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (radius == 0) {
+            src.copyTo(dst);
+            return;
+        }
+
+        PixelBuffer scratch = PixelBuffer.wrap(new int[width * height], 0, width, width, height);
+        if (engine == Engine.GAUSSIAN) {
+            int[] weights = SeparableBlur.gaussianWeights(radius, sigma);
+            SeparableBlur.convolveRows(src, scratch, weights);
+            SeparableBlur.convolveColumns(scratch, dst, weights);
+        } else {
+            // Ping-pong between scratch and dst; an even number of passes ends in dst
+            PixelBuffer from = src;
+            PixelBuffer to = scratch;
+            for (int box : boxes) {
+                SeparableBlur.boxRows(from, to, box);
+                from = to;
+                to = (to == scratch) ? dst : scratch;
+            }
+            for (int box : boxes) {
+                SeparableBlur.boxColumns(from, to, box);
+                from = to;
+                to = (to == scratch) ? dst : scratch;
             }
         }
-        
-        for (int i = 0; i < kernel.length; i++) {
-            kernel[i] /= sum;
+    }
+
+    @Override
+    public int getNeighborhoodRadius() {
+        if (engine == Engine.GAUSSIAN) {
+            return radius;
+        }
+        // Successive boxes widen the support by their radii
+        int support = 0;
+        for (int box : boxes) {
+            support += box;
         }
-        
-        return kernel;
+        return support;
+    }
+
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + "(radius=" + radius + ", engine=" + engine + ")";
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public Engine getEngine() {
+        return engine;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.my.app.filters.impl;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Builders for 256-entry per-channel lookup tables.
+ */
+final class ChannelLuts {
+
+    private ChannelLuts() {
+    }
+
+    /**
+     * {@code table[v] == v * factor}, bit for bit, so sums of table entries reproduce the
+     * original floating-point expressions exactly.
+     */
+    static double[] products(double factor) {
+        double[] table = new double[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = v * factor;
+        }
+        return table;
+    }
+
+    static int[] map(IntUnaryOperator curve) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = curve.applyAsInt(v);
+        }
+        return table;
+    }
+}
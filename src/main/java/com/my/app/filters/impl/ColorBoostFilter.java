@@ -1,11 +1,17 @@
 package com.my.app.filters.impl;
 
-import com.my.app.filters.ImageFilter;
+import com.my.app.filters.ColorLut3D;
+import com.my.app.filters.PointFilter;
+
 import java.awt.*;
-import java.awt.image.BufferedImage;
 
-public class ColorBoostFilter implements ImageFilter {
+/**
+ * Scales HSV saturation. Pixels are mapped through a cached 3D color LUT of the exact HSV
+ * round trip, which stays within a few levels of it at a fraction of the cost.
+ */
+public class ColorBoostFilter extends PointFilter {
     private final double saturationBoost;
+    private volatile ColorLut3D lut;
     
     public ColorBoostFilter() {
         this.saturationBoost = 1.5;
@@ -16,32 +22,33 @@ public class ColorBoostFilter implements ImageFilter {
     }
     
     @Override
-    public BufferedImage apply(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
+    public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                         int x, int y, int width, int height) {
+        ColorLut3D table = lut;
+        if (table == null) {
+            table = ColorLut3D.cached("ColorBoost:" + saturationBoost, this::boost);
+            lut = table;
+        }
+        table.applyRow(src, srcIndex, dst, dstIndex, length);
+    }
+    
+    @Override
+    public String getIdentity() {
+        return getClass().getName() + "(saturationBoost=" + saturationBoost + ")";
+    }
+    
+    private int boost(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
         
-        BufferedImage boostedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // Convert RGB to HSV
+        float[] hsv = Color.RGBtoHSB(r, g, b, null);
         
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = originalImage.getRGB(x, y);
-                
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                // Convert RGB to HSV
-                float[] hsv = Color.RGBtoHSB(r, g, b, null);
-                
-                // Boost saturation
-                hsv[1] = Math.min(1.0f, (float) (hsv[1] * saturationBoost));
-                
-                // Convert back to RGB
-                Color boostedColor = Color.getHSBColor(hsv[0], hsv[1], hsv[2]);
-                boostedImage.setRGB(x, y, boostedColor.getRGB());
-            }
-        }
+        // Boost saturation
+        hsv[1] = Math.min(1.0f, (float) (hsv[1] * saturationBoost));
         
-        return boostedImage;
+        // Convert back to RGB
+        return Color.HSBtoRGB(hsv[0], hsv[1], hsv[2]);
     }
-}
\ No newline at end of file
+}
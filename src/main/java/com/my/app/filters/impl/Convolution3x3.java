@@ -0,0 +1,144 @@
+package com.my.app.filters.impl;
+
+import com.my.app.image.PixelBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Shared 3x3 neighborhood loops for the convolution filters. Pixels on the outermost
+ * row and column have an incomplete neighborhood and are written black.
+ */
+final class Convolution3x3 {
+
+    private Convolution3x3() {
+    }
+
+    /**
+     * Convolves each RGB channel with a row-major 3x3 integer kernel, adds {@code bias}
+     * and clamps to 0-255.
+     */
+    static void convolve(PixelBuffer src, PixelBuffer dst, int[] kernel, int bias) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] in = src.getData();
+        int[] out = dst.getData();
+
+        for (int y = 0; y < height; y++) {
+            int dstIndex = dst.index(0, y);
+            if (!clearBorder(out, dstIndex, y, width, height)) {
+                continue;
+            }
+            int up = src.index(0, y - 1);
+            int mid = src.index(0, y);
+            int down = src.index(0, y + 1);
+
+            int x = 1;
+            if (SimdSupport.ENABLED) {
+                x = VectorKernels.convolveRow(in, up, mid, down, out, dstIndex, width - 1, kernel, bias);
+            }
+            for (; x < width - 1; x++) {
+                out[dstIndex + x] = convolvePixel(in, up, mid, down, x, kernel, bias);
+            }
+        }
+    }
+
+    /**
+     * Output pixel {@code x} of {@link #convolve}, with {@code up}, {@code mid} and {@code down}
+     * the indices of column 0 in the three input rows.
+     */
+    static int convolvePixel(int[] in, int up, int mid, int down, int x, int[] kernel, int bias) {
+        int sumR = bias, sumG = bias, sumB = bias;
+
+        for (int ky = 0; ky < 3; ky++) {
+            int row = (ky == 0 ? up : ky == 1 ? mid : down) + x - 1;
+            for (int kx = 0; kx < 3; kx++) {
+                int rgb = in[row + kx];
+                int weight = kernel[ky * 3 + kx];
+                sumR += ((rgb >> 16) & 0xFF) * weight;
+                sumG += ((rgb >> 8) & 0xFF) * weight;
+                sumB += (rgb & 0xFF) * weight;
+            }
+        }
+
+        int newR = Math.min(255, Math.max(0, sumR));
+        int newG = Math.min(255, Math.max(0, sumG));
+        int newB = Math.min(255, Math.max(0, sumB));
+        return (newR << 16) | (newG << 8) | newB;
+    }
+
+    /**
+     * Sobel gradient magnitude of the luminance channel, written as a gray pixel.
+     */
+    static void sobel(PixelBuffer src, PixelBuffer dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] in = src.getData();
+        int[] out = dst.getData();
+
+        // One luminance row per kernel row, rotated as the window moves down
+        int[] above = new int[width];
+        int[] center = new int[width];
+        int[] below = new int[width];
+        if (height >= 3) {
+            luminanceRow(in, src.index(0, 0), above);
+            luminanceRow(in, src.index(0, 1), center);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int dstIndex = dst.index(0, y);
+            if (!clearBorder(out, dstIndex, y, width, height)) {
+                continue;
+            }
+            luminanceRow(in, src.index(0, y + 1), below);
+
+            int x = 1;
+            if (SimdSupport.ENABLED) {
+                x = VectorKernels.sobelRow(above, center, below, out, dstIndex, width - 1);
+            }
+            for (; x < width - 1; x++) {
+                out[dstIndex + x] = sobelPixel(above, center, below, x);
+            }
+
+            int[] recycled = above;
+            above = center;
+            center = below;
+            below = recycled;
+        }
+    }
+
+    /** Output pixel {@code x} of {@link #sobel} from three luminance rows. */
+    static int sobelPixel(int[] above, int[] center, int[] below, int x) {
+        int gx = (above[x + 1] + 2 * center[x + 1] + below[x + 1])
+                - (above[x - 1] + 2 * center[x - 1] + below[x - 1]);
+        int gy = (below[x - 1] + 2 * below[x] + below[x + 1])
+                - (above[x - 1] + 2 * above[x] + above[x + 1]);
+
+        int magnitude = (int) Math.sqrt(gx * gx + gy * gy);
+        magnitude = Math.min(255, Math.max(0, magnitude));
+        return (magnitude << 16) | (magnitude << 8) | magnitude;
+    }
+
+    private static void luminanceRow(int[] in, int index, int[] row) {
+        int x = 0;
+        if (SimdSupport.ENABLED) {
+            x = VectorKernels.luminanceRow(in, index, row, 0, row.length);
+        }
+        for (; x < row.length; x++) {
+            row[x] = GreyScaleFilter.luminance(in[index + x]);
+        }
+    }
+
+    /**
+     * Blackens the border pixels of output row {@code y}; returns whether the row has an
+     * interior left to compute.
+     */
+    private static boolean clearBorder(int[] out, int dstIndex, int y, int width, int height) {
+        if (y == 0 || y == height - 1 || width < 3) {
+            Arrays.fill(out, dstIndex, dstIndex + width, 0);
+            return false;
+        }
+        out[dstIndex] = 0;
+        out[dstIndex + width - 1] = 0;
+        return true;
+    }
+}
@@ -1,30 +1,94 @@
 package com.my.app.filters.impl;
 
-import com.my.app.filters.ImageFilter;
+import com.my.app.filters.PointFilter;
+import com.my.app.image.PixelBuffer;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+public class GreyScaleFilter extends PointFilter {
+    // TYPE_BYTE_GRAY stores linear gray, so setRGB(gray) does not store the sRGB value verbatim.
+    // These tables capture exactly what setRGB stores and what getRGB reads back for each level.
+    private static final byte[] GRAY_TO_SAMPLE = new byte[256];
+    private static final int[] GRAY_TO_RGB = new int[256];
+    // The sample stored for each level GRAY_TO_RGB reads back, indexed by its blue byte
+    private static final byte[] RGB_TO_SAMPLE = new byte[256];
+    private static final double[] LUMA_R = ChannelLuts.products(0.2126);
+    private static final double[] LUMA_G = ChannelLuts.products(0.7152);
+    private static final double[] LUMA_B = ChannelLuts.products(0.0722);
+
+    static {
+        BufferedImage probe = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for (int gray = 0; gray < 256; gray++) {
+            probe.setRGB(gray, 0, 0xFF000000 | (gray << 16) | (gray << 8) | gray);
+        }
+        byte[] samples = ((DataBufferByte) probe.getRaster().getDataBuffer()).getData();
+        for (int gray = 0; gray < 256; gray++) {
+            GRAY_TO_SAMPLE[gray] = samples[gray];
+            GRAY_TO_RGB[gray] = probe.getRGB(gray, 0) & 0xFFFFFF;
+            RGB_TO_SAMPLE[GRAY_TO_RGB[gray] & 0xFF] = GRAY_TO_SAMPLE[gray];
+        }
+    }
 
-public class GreyScaleFilter implements ImageFilter {
     @Override
     public BufferedImage apply(BufferedImage originalImage) {
         int width = originalImage.getWidth();
         int height = originalImage.getHeight();
 
         BufferedImage grayscaleImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = ((DataBufferByte) grayscaleImage.getRaster().getDataBuffer()).getData();
 
+        PixelBuffer src = PixelBuffer.of(originalImage);
+        int[] luma = new int[width];
         for (int y = 0; y < height; y++) {
+            luminanceRow(src.getData(), src.index(0, y), luma, 0, width);
+            int dstIndex = y * width;
             for (int x = 0; x < width; x++) {
-                int rgb = originalImage.getRGB(x, y);
-
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                int gray = (int) (0.2126 * r + 0.7152 * g + 0.0722 * b);
-                int newRgb = new Color(gray, gray, gray).getRGB();
-                grayscaleImage.setRGB(x, y, newRgb);
+                out[dstIndex + x] = GRAY_TO_SAMPLE[luma[x]];
             }
         }
         return grayscaleImage;
     }
+
+    @Override
+    public BufferedImage toImage(PixelBuffer pixels) {
+        int width = pixels.getWidth();
+        int height = pixels.getHeight();
+
+        BufferedImage grayscaleImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = ((DataBufferByte) grayscaleImage.getRaster().getDataBuffer()).getData();
+        int[] data = pixels.getData();
+        for (int y = 0; y < height; y++) {
+            int srcIndex = pixels.index(0, y);
+            int dstIndex = y * width;
+            for (int x = 0; x < width; x++) {
+                out[dstIndex + x] = RGB_TO_SAMPLE[data[srcIndex + x] & 0xFF];
+            }
+        }
+        return grayscaleImage;
+    }
+
+    @Override
+    public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                         int x, int y, int width, int height) {
+        // Luminance lands in dst first, then is mapped in place
+        luminanceRow(src, srcIndex, dst, dstIndex, length);
+        for (int i = 0; i < length; i++) {
+            dst[dstIndex + i] = GRAY_TO_RGB[dst[dstIndex + i]];
+        }
+    }
+
+    private static void luminanceRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        int i = 0;
+        if (SimdSupport.ENABLED) {
+            i = VectorKernels.luminanceRow(src, srcIndex, dst, dstIndex, length);
+        }
+        for (; i < length; i++) {
+            dst[dstIndex + i] = luminance(src[srcIndex + i]);
+        }
+    }
+
+    static int luminance(int rgb) {
+        return (int) (LUMA_R[(rgb >> 16) & 0xFF] + LUMA_G[(rgb >> 8) & 0xFF] + LUMA_B[rgb & 0xFF]);
+    }
 }
@@ -0,0 +1,227 @@
+package com.my.app.filters.impl;
+
+import com.my.app.image.PixelBuffer;
+
+import java.util.Arrays;
+
+/**
+ * One-dimensional blur passes used by {@link BlurFilter}. Every pass reads {@code src} and
+ * writes {@code dst} (same size, non-overlapping) and replicates edge pixels, so the cost per
+ * pixel never depends on where the pixel sits in the image.
+ */
+final class SeparableBlur {
+    static final int WEIGHT_SHIFT = 16;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_SHIFT;
+    private static final int WEIGHT_HALF = WEIGHT_ONE >> 1;
+
+    private SeparableBlur() {
+    }
+
+    /**
+     * Fixed-point Gaussian weights for offsets -radius..radius, summing to exactly
+     * {@code 1 << WEIGHT_SHIFT} so flat regions keep their brightness.
+     */
+    static int[] gaussianWeights(int radius, double sigma) {
+        double[] exact = new double[2 * radius + 1];
+        double sum = 0;
+        for (int k = -radius; k <= radius; k++) {
+            exact[k + radius] = Math.exp(-(k * k) / (2 * sigma * sigma));
+            sum += exact[k + radius];
+        }
+
+        int[] weights = new int[exact.length];
+        int total = 0;
+        for (int i = 0; i < exact.length; i++) {
+            weights[i] = (int) Math.round(exact[i] / sum * WEIGHT_ONE);
+            total += weights[i];
+        }
+        weights[radius] += WEIGHT_ONE - total;
+        return weights;
+    }
+
+    /**
+     * Standard deviation of the Gaussian truncated to -radius..radius, which is narrower than
+     * {@code sigma} once the tails are cut off.
+     */
+    static double truncatedSigma(int radius, double sigma) {
+        double weightSum = 0;
+        double varianceSum = 0;
+        for (int k = -radius; k <= radius; k++) {
+            double weight = Math.exp(-(k * k) / (2 * sigma * sigma));
+            weightSum += weight;
+            varianceSum += weight * k * k;
+        }
+        return Math.sqrt(varianceSum / weightSum);
+    }
+
+    /**
+     * Radii of {@code passes} successive box blurs whose combined response approximates a
+     * Gaussian of the given sigma (the standard "boxes for Gauss" construction).
+     */
+    static int[] boxRadii(double sigma, int passes) {
+        double variance = 12 * sigma * sigma;
+        int lower = (int) Math.floor(Math.sqrt(variance / passes + 1));
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        long lowerCount = Math.round((variance - passes * lower * lower - 4.0 * passes * lower - 3.0 * passes)
+                / (-4.0 * lower - 4));
+
+        int[] radii = new int[passes];
+        for (int i = 0; i < passes; i++) {
+            radii[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+        }
+        return radii;
+    }
+
+    static void convolveRows(PixelBuffer src, PixelBuffer dst, int[] weights) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int radius = weights.length / 2;
+        int[] in = src.getData();
+        int[] out = dst.getData();
+        int[] padded = new int[width + 2 * radius];
+
+        for (int y = 0; y < height; y++) {
+            padRow(in, src.index(0, y), width, radius, padded);
+            int dstIndex = dst.index(0, y);
+
+            for (int x = 0; x < width; x++) {
+                int sumR = WEIGHT_HALF, sumG = WEIGHT_HALF, sumB = WEIGHT_HALF;
+                for (int k = 0; k < weights.length; k++) {
+                    int rgb = padded[x + k];
+                    int weight = weights[k];
+                    sumR += ((rgb >> 16) & 0xFF) * weight;
+                    sumG += ((rgb >> 8) & 0xFF) * weight;
+                    sumB += (rgb & 0xFF) * weight;
+                }
+                out[dstIndex + x] = ((sumR >> WEIGHT_SHIFT) << 16) | ((sumG >> WEIGHT_SHIFT) << 8) | (sumB >> WEIGHT_SHIFT);
+            }
+        }
+    }
+
+    static void convolveColumns(PixelBuffer src, PixelBuffer dst, int[] weights) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int radius = weights.length / 2;
+        int[] in = src.getData();
+        int[] out = dst.getData();
+        // Accumulate whole rows at a time so memory is walked sequentially
+        int[] sumR = new int[width];
+        int[] sumG = new int[width];
+        int[] sumB = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sumR, WEIGHT_HALF);
+            Arrays.fill(sumG, WEIGHT_HALF);
+            Arrays.fill(sumB, WEIGHT_HALF);
+
+            for (int k = 0; k < weights.length; k++) {
+                int srcIndex = src.index(0, clamp(y + k - radius, height));
+                int weight = weights[k];
+                for (int x = 0; x < width; x++) {
+                    int rgb = in[srcIndex + x];
+                    sumR[x] += ((rgb >> 16) & 0xFF) * weight;
+                    sumG[x] += ((rgb >> 8) & 0xFF) * weight;
+                    sumB[x] += (rgb & 0xFF) * weight;
+                }
+            }
+
+            int dstIndex = dst.index(0, y);
+            for (int x = 0; x < width; x++) {
+                out[dstIndex + x] = ((sumR[x] >> WEIGHT_SHIFT) << 16) | ((sumG[x] >> WEIGHT_SHIFT) << 8) | (sumB[x] >> WEIGHT_SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Horizontal box blur with running sums: constant work per pixel for any radius.
+     */
+    static void boxRows(PixelBuffer src, PixelBuffer dst, int radius) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int diameter = 2 * radius + 1;
+        int half = diameter / 2;
+        int[] in = src.getData();
+        int[] out = dst.getData();
+        int[] padded = new int[width + 2 * radius];
+
+        for (int y = 0; y < height; y++) {
+            padRow(in, src.index(0, y), width, radius, padded);
+            int dstIndex = dst.index(0, y);
+
+            int sumR = 0, sumG = 0, sumB = 0;
+            for (int k = 0; k < diameter - 1; k++) {
+                int rgb = padded[k];
+                sumR += (rgb >> 16) & 0xFF;
+                sumG += (rgb >> 8) & 0xFF;
+                sumB += rgb & 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                int entering = padded[x + diameter - 1];
+                sumR += (entering >> 16) & 0xFF;
+                sumG += (entering >> 8) & 0xFF;
+                sumB += entering & 0xFF;
+
+                out[dstIndex + x] = (((sumR + half) / diameter) << 16) | (((sumG + half) / diameter) << 8) | ((sumB + half) / diameter);
+
+                int leaving = padded[x];
+                sumR -= (leaving >> 16) & 0xFF;
+                sumG -= (leaving >> 8) & 0xFF;
+                sumB -= leaving & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Vertical box blur keeping one running sum per column, updated a row at a time.
+     */
+    static void boxColumns(PixelBuffer src, PixelBuffer dst, int radius) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int diameter = 2 * radius + 1;
+        int half = diameter / 2;
+        int[] in = src.getData();
+        int[] out = dst.getData();
+        int[] sumR = new int[width];
+        int[] sumG = new int[width];
+        int[] sumB = new int[width];
+
+        for (int k = -radius; k < radius; k++) {
+            addRow(in, src.index(0, clamp(k, height)), width, sumR, sumG, sumB, 1);
+        }
+        for (int y = 0; y < height; y++) {
+            addRow(in, src.index(0, clamp(y + radius, height)), width, sumR, sumG, sumB, 1);
+
+            int dstIndex = dst.index(0, y);
+            for (int x = 0; x < width; x++) {
+                out[dstIndex + x] = (((sumR[x] + half) / diameter) << 16) | (((sumG[x] + half) / diameter) << 8) | ((sumB[x] + half) / diameter);
+            }
+
+            addRow(in, src.index(0, clamp(y - radius, height)), width, sumR, sumG, sumB, -1);
+        }
+    }
+
+    private static void addRow(int[] in, int srcIndex, int width, int[] sumR, int[] sumG, int[] sumB, int sign) {
+        for (int x = 0; x < width; x++) {
+            int rgb = in[srcIndex + x];
+            sumR[x] += sign * ((rgb >> 16) & 0xFF);
+            sumG[x] += sign * ((rgb >> 8) & 0xFF);
+            sumB[x] += sign * (rgb & 0xFF);
+        }
+    }
+
+    /**
+     * Copies one source row into {@code padded}, replicating the edge pixels {@code radius} times on each side.
+     */
+    private static void padRow(int[] in, int srcIndex, int width, int radius, int[] padded) {
+        Arrays.fill(padded, 0, radius, in[srcIndex]);
+        System.arraycopy(in, srcIndex, padded, radius, width);
+        Arrays.fill(padded, radius + width, padded.length, in[srcIndex + width - 1]);
+    }
+
+    private static int clamp(int index, int length) {
+        return Math.max(0, Math.min(index, length - 1));
+    }
+}
@@ -1,35 +1,40 @@
 package com.my.app.filters.impl;
 
-import com.my.app.filters.ImageFilter;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import com.my.app.filters.PointFilter;
 
-public class SepiaFilter implements ImageFilter {
+public class SepiaFilter extends PointFilter {
+    // Per-channel contributions to each output channel; summed in the original order
+    private static final double[] RED_FROM_R = ChannelLuts.products(0.393);
+    private static final double[] RED_FROM_G = ChannelLuts.products(0.769);
+    private static final double[] RED_FROM_B = ChannelLuts.products(0.189);
+    private static final double[] GREEN_FROM_R = ChannelLuts.products(0.349);
+    private static final double[] GREEN_FROM_G = ChannelLuts.products(0.686);
+    private static final double[] GREEN_FROM_B = ChannelLuts.products(0.168);
+    private static final double[] BLUE_FROM_R = ChannelLuts.products(0.272);
+    private static final double[] BLUE_FROM_G = ChannelLuts.products(0.534);
+    private static final double[] BLUE_FROM_B = ChannelLuts.products(0.131);
     
     @Override
-    public BufferedImage apply(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        BufferedImage sepiaImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = originalImage.getRGB(x, y);
-                
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                int newR = (int) Math.min(255, (r * 0.393) + (g * 0.769) + (b * 0.189));
-                int newG = (int) Math.min(255, (r * 0.349) + (g * 0.686) + (b * 0.168));
-                int newB = (int) Math.min(255, (r * 0.272) + (g * 0.534) + (b * 0.131));
-                
-                Color sepiaColor = new Color(newR, newG, newB);
-                sepiaImage.setRGB(x, y, sepiaColor.getRGB());
-            }
+    public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                         int x, int y, int width, int height) {
+        int i = 0;
+        if (SimdSupport.ENABLED) {
+            i = VectorKernels.sepiaRow(src, srcIndex, dst, dstIndex, length);
+        }
+        for (; i < length; i++) {
+            dst[dstIndex + i] = sepia(src[srcIndex + i]);
         }
+    }
+
+    static int sepia(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        
+        int newR = (int) Math.min(255, RED_FROM_R[r] + RED_FROM_G[g] + RED_FROM_B[b]);
+        int newG = (int) Math.min(255, GREEN_FROM_R[r] + GREEN_FROM_G[g] + GREEN_FROM_B[b]);
+        int newB = (int) Math.min(255, BLUE_FROM_R[r] + BLUE_FROM_G[g] + BLUE_FROM_B[b]);
         
-        return sepiaImage;
+        return (newR << 16) | (newG << 8) | newB;
     }
-}
\ No newline at end of file
+}
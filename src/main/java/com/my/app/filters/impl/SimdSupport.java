@@ -0,0 +1,18 @@
+package com.my.app.filters.impl;
+
+/**
+ * Decides once whether filters use the {@link VectorKernels} SIMD paths.
+ * <p>
+ * They are used when the {@code jdk.incubator.vector} module is present at runtime (for
+ * example via {@code --add-modules jdk.incubator.vector}) unless
+ * {@code -Dimageprocessor.simd=false} is set. The scalar paths compute exactly the same
+ * pixels, so the choice only affects speed. {@code VectorKernels} is never loaded when this
+ * is false.
+ */
+final class SimdSupport {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("imageprocessor.simd", "true"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private SimdSupport() {
+    }
+}
@@ -0,0 +1,182 @@
+package com.my.app.filters.impl;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ASHR;
+import static jdk.incubator.vector.VectorOperators.D2I;
+import static jdk.incubator.vector.VectorOperators.I2D;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.SQRT;
+
+/**
+ * SIMD versions of the hot filter loops, built on the incubating Vector API. Only reached
+ * through {@link SimdSupport#ENABLED}.
+ * <p>
+ * Every kernel performs the same integer or double operations in the same order as its
+ * scalar twin, so results are bit-identical. Each processes whole vectors from the start of
+ * its range and returns the index where the caller's scalar loop should take over.
+ * <p>
+ * The kernels are deliberately written out without shared helper methods: a helper that
+ * HotSpot has already compiled on its own is not inlined into a large caller, and every
+ * vector crossing that call boundary is then boxed on the heap.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Int lanes matching DOUBLES one-to-one, for int <-> double conversions. All kernels use this
+    // one int species: mixing shapes makes the Vector API's shared code polymorphic, which
+    // defeats its intrinsics and leaves every vector boxed on the heap.
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Luminance of each pixel, as {@link GreyScaleFilter#luminance(int)}.
+     */
+    static int luminanceRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector rgb = IntVector.fromArray(INTS, src, srcIndex + i);
+            DoubleVector r = (DoubleVector) rgb.lanewise(LSHR, 16).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector g = (DoubleVector) rgb.lanewise(LSHR, 8).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector b = (DoubleVector) rgb.and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector luma = r.mul(0.2126).add(g.mul(0.7152)).add(b.mul(0.0722));
+            ((IntVector) luma.convertShape(D2I, INTS, 0)).intoArray(dst, dstIndex + i);
+        }
+        return i;
+    }
+
+    static int sepiaRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector rgb = IntVector.fromArray(INTS, src, srcIndex + i);
+            DoubleVector r = (DoubleVector) rgb.lanewise(LSHR, 16).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector g = (DoubleVector) rgb.lanewise(LSHR, 8).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector b = (DoubleVector) rgb.and(0xFF).convertShape(I2D, DOUBLES, 0);
+
+            IntVector newR = (IntVector) r.mul(0.393).add(g.mul(0.769)).add(b.mul(0.189)).min(255)
+                    .convertShape(D2I, INTS, 0);
+            IntVector newG = (IntVector) r.mul(0.349).add(g.mul(0.686)).add(b.mul(0.168)).min(255)
+                    .convertShape(D2I, INTS, 0);
+            IntVector newB = (IntVector) r.mul(0.272).add(g.mul(0.534)).add(b.mul(0.131)).min(255)
+                    .convertShape(D2I, INTS, 0);
+            newR.lanewise(LSHL, 16).or(newG.lanewise(LSHL, 8)).or(newB).intoArray(dst, dstIndex + i);
+        }
+        return i;
+    }
+
+    /**
+     * Vintage grading followed by the fixed-point vignette, with {@code vignette[i]} the
+     * factor for pixel {@code i}.
+     */
+    static int vintageRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length, int[] vignette) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector rgb = IntVector.fromArray(INTS, src, srcIndex + i);
+            IntVector factor = IntVector.fromArray(INTS, vignette, i);
+            DoubleVector r = (DoubleVector) rgb.lanewise(LSHR, 16).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector g = (DoubleVector) rgb.lanewise(LSHR, 8).and(0xFF).convertShape(I2D, DOUBLES, 0);
+            DoubleVector b = (DoubleVector) rgb.and(0xFF).convertShape(I2D, DOUBLES, 0);
+
+            IntVector newR = (IntVector) r.mul(1.2).add(20).min(255).convertShape(D2I, INTS, 0);
+            IntVector newG = (IntVector) g.mul(1.1).add(10).min(255).convertShape(D2I, INTS, 0);
+            IntVector newB = (IntVector) b.mul(0.8).sub(10).min(255).convertShape(D2I, INTS, 0);
+            newR = newR.mul(factor).lanewise(ASHR, VignetteMask.SHIFT).max(0).min(255);
+            newG = newG.mul(factor).lanewise(ASHR, VignetteMask.SHIFT).max(0).min(255);
+            newB = newB.mul(factor).lanewise(ASHR, VignetteMask.SHIFT).max(0).min(255);
+            newR.lanewise(LSHL, 16).or(newG.lanewise(LSHL, 8)).or(newB).intoArray(dst, dstIndex + i);
+        }
+        return i;
+    }
+
+    /**
+     * One output row of {@link Convolution3x3#convolve}, from column 1 up to {@code end}.
+     */
+    static int convolveRow(int[] in, int up, int mid, int down, int[] out, int dstIndex, int end,
+                           int[] kernel, int bias) {
+        int k0 = kernel[0], k1 = kernel[1], k2 = kernel[2];
+        int k3 = kernel[3], k4 = kernel[4], k5 = kernel[5];
+        int k6 = kernel[6], k7 = kernel[7], k8 = kernel[8];
+        IntVector biasVector = IntVector.broadcast(INTS, bias);
+
+        int x = 1;
+        for (; x + INTS.length() <= end; x += INTS.length()) {
+            IntVector sumR = biasVector;
+            IntVector sumG = biasVector;
+            IntVector sumB = biasVector;
+            IntVector rgb0 = IntVector.fromArray(INTS, in, up + x - 1);
+            sumR = sumR.add(rgb0.lanewise(LSHR, 16).and(0xFF).mul(k0));
+            sumG = sumG.add(rgb0.lanewise(LSHR, 8).and(0xFF).mul(k0));
+            sumB = sumB.add(rgb0.and(0xFF).mul(k0));
+            IntVector rgb1 = IntVector.fromArray(INTS, in, up + x);
+            sumR = sumR.add(rgb1.lanewise(LSHR, 16).and(0xFF).mul(k1));
+            sumG = sumG.add(rgb1.lanewise(LSHR, 8).and(0xFF).mul(k1));
+            sumB = sumB.add(rgb1.and(0xFF).mul(k1));
+            IntVector rgb2 = IntVector.fromArray(INTS, in, up + x + 1);
+            sumR = sumR.add(rgb2.lanewise(LSHR, 16).and(0xFF).mul(k2));
+            sumG = sumG.add(rgb2.lanewise(LSHR, 8).and(0xFF).mul(k2));
+            sumB = sumB.add(rgb2.and(0xFF).mul(k2));
+            IntVector rgb3 = IntVector.fromArray(INTS, in, mid + x - 1);
+            sumR = sumR.add(rgb3.lanewise(LSHR, 16).and(0xFF).mul(k3));
+            sumG = sumG.add(rgb3.lanewise(LSHR, 8).and(0xFF).mul(k3));
+            sumB = sumB.add(rgb3.and(0xFF).mul(k3));
+            IntVector rgb4 = IntVector.fromArray(INTS, in, mid + x);
+            sumR = sumR.add(rgb4.lanewise(LSHR, 16).and(0xFF).mul(k4));
+            sumG = sumG.add(rgb4.lanewise(LSHR, 8).and(0xFF).mul(k4));
+            sumB = sumB.add(rgb4.and(0xFF).mul(k4));
+            IntVector rgb5 = IntVector.fromArray(INTS, in, mid + x + 1);
+            sumR = sumR.add(rgb5.lanewise(LSHR, 16).and(0xFF).mul(k5));
+            sumG = sumG.add(rgb5.lanewise(LSHR, 8).and(0xFF).mul(k5));
+            sumB = sumB.add(rgb5.and(0xFF).mul(k5));
+            IntVector rgb6 = IntVector.fromArray(INTS, in, down + x - 1);
+            sumR = sumR.add(rgb6.lanewise(LSHR, 16).and(0xFF).mul(k6));
+            sumG = sumG.add(rgb6.lanewise(LSHR, 8).and(0xFF).mul(k6));
+            sumB = sumB.add(rgb6.and(0xFF).mul(k6));
+            IntVector rgb7 = IntVector.fromArray(INTS, in, down + x);
+            sumR = sumR.add(rgb7.lanewise(LSHR, 16).and(0xFF).mul(k7));
+            sumG = sumG.add(rgb7.lanewise(LSHR, 8).and(0xFF).mul(k7));
+            sumB = sumB.add(rgb7.and(0xFF).mul(k7));
+            IntVector rgb8 = IntVector.fromArray(INTS, in, down + x + 1);
+            sumR = sumR.add(rgb8.lanewise(LSHR, 16).and(0xFF).mul(k8));
+            sumG = sumG.add(rgb8.lanewise(LSHR, 8).and(0xFF).mul(k8));
+            sumB = sumB.add(rgb8.and(0xFF).mul(k8));
+
+            sumR = sumR.max(0).min(255);
+            sumG = sumG.max(0).min(255);
+            sumB = sumB.max(0).min(255);
+            sumR.lanewise(LSHL, 16).or(sumG.lanewise(LSHL, 8)).or(sumB).intoArray(out, dstIndex + x);
+        }
+        return x;
+    }
+
+    /**
+     * One output row of {@link Convolution3x3#sobel} from luminance rows, from column 1 up
+     * to {@code end}.
+     */
+    static int sobelRow(int[] above, int[] center, int[] below, int[] out, int dstIndex, int end) {
+        int x = 1;
+        for (; x + INTS.length() <= end; x += INTS.length()) {
+            IntVector aL = IntVector.fromArray(INTS, above, x - 1);
+            IntVector a = IntVector.fromArray(INTS, above, x);
+            IntVector aR = IntVector.fromArray(INTS, above, x + 1);
+            IntVector cL = IntVector.fromArray(INTS, center, x - 1);
+            IntVector cR = IntVector.fromArray(INTS, center, x + 1);
+            IntVector bL = IntVector.fromArray(INTS, below, x - 1);
+            IntVector b = IntVector.fromArray(INTS, below, x);
+            IntVector bR = IntVector.fromArray(INTS, below, x + 1);
+
+            IntVector gx = aR.add(cR.mul(2)).add(bR).sub(aL.add(cL.mul(2)).add(bL));
+            IntVector gy = bL.add(b.mul(2)).add(bR).sub(aL.add(a.mul(2)).add(aR));
+            DoubleVector squared = (DoubleVector) gx.mul(gx).add(gy.mul(gy)).convertShape(I2D, DOUBLES, 0);
+            IntVector magnitude = (IntVector) squared.lanewise(SQRT).convertShape(D2I, INTS, 0);
+            magnitude = magnitude.max(0).min(255);
+            magnitude.lanewise(LSHL, 16).or(magnitude.lanewise(LSHL, 8)).or(magnitude).intoArray(out, dstIndex + x);
+        }
+        return x;
+    }
+}
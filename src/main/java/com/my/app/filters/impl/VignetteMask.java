@@ -0,0 +1,111 @@
+package com.my.app.filters.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed radial vignette factors for one image size.
+ * <p>
+ * The factor falls off linearly with distance from the image center, reaching
+ * {@code 1 - strength} in the corners. It is symmetric about the center, so only one
+ * quadrant is stored, as 15-bit fixed point: about half a byte per image pixel. Masks are
+ * shared through a small LRU cache bounded by total bytes, so a batch of same-sized images
+ * computes the mask once. Masks larger than half the cache are never cached, so a few very
+ * large images cannot pin memory beyond the bound; callers keep those for as long as they
+ * need them.
+ */
+final class VignetteMask {
+    static final int SHIFT = 15;
+    private static final long MAX_CACHE_BYTES = 32L << 20;
+    private static final long MAX_CACHED_MASK_BYTES = MAX_CACHE_BYTES / 2;
+
+    private static final Map<String, VignetteMask> CACHE = new LinkedHashMap<>(8, 0.75f, true);
+    private static long cachedBytes;
+
+    private final int width;
+    private final int height;
+    private final double strength;
+    private final int columns;
+    private final char[] factors;
+
+    private VignetteMask(int width, int height, double strength) {
+        this.width = width;
+        this.height = height;
+        this.strength = strength;
+        this.columns = width / 2 + 1;
+        int rows = height / 2 + 1;
+        this.factors = new char[columns * rows];
+
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        double maxDistance = Math.sqrt(centerX * centerX + centerY * centerY);
+        for (int row = 0; row < rows; row++) {
+            double dy = quadrantOffset(row, height);
+            for (int column = 0; column < columns; column++) {
+                double dx = quadrantOffset(column, width);
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double vignette = 1.0 - (distance / maxDistance) * strength;
+                factors[row * columns + column] = (char) Math.round(Math.max(0, vignette) * (1 << SHIFT));
+            }
+        }
+    }
+
+    static VignetteMask get(int width, int height, double strength) {
+        String key = width + "x" + height + "@" + strength;
+        synchronized (CACHE) {
+            VignetteMask mask = CACHE.get(key);
+            if (mask != null) {
+                return mask;
+            }
+        }
+        VignetteMask mask = new VignetteMask(width, height, strength);
+        if (mask.sizeInBytes() > MAX_CACHED_MASK_BYTES) {
+            return mask;
+        }
+        synchronized (CACHE) {
+            VignetteMask existing = CACHE.putIfAbsent(key, mask);
+            if (existing != null) {
+                return existing;
+            }
+            cachedBytes += mask.sizeInBytes();
+            var eldest = CACHE.entrySet().iterator();
+            while (cachedBytes > MAX_CACHE_BYTES) {
+                cachedBytes -= eldest.next().getValue().sizeInBytes();
+                eldest.remove();
+            }
+            return mask;
+        }
+    }
+
+    boolean matches(int width, int height, double strength) {
+        return this.width == width && this.height == height && this.strength == strength;
+    }
+
+    /**
+     * Index of row {@code y}'s quadrant row; add {@link #column(int)} to get a factor.
+     */
+    int row(int y) {
+        return (Math.abs(2 * y - height) >> 1) * columns;
+    }
+
+    int column(int x) {
+        return Math.abs(2 * x - width) >> 1;
+    }
+
+    /** Fixed-point factor with {@link #SHIFT} fraction bits. */
+    int factor(int index) {
+        return factors[index];
+    }
+
+    private long sizeInBytes() {
+        return (long) factors.length * Character.BYTES;
+    }
+
+    /**
+     * Distance from the center of the pixel-index at quadrant position {@code index}. For
+     * odd sizes the center falls between pixels, so offsets are half-integers.
+     */
+    private static double quadrantOffset(int index, int size) {
+        return index + (size & 1) / 2.0;
+    }
+}
@@ -1,47 +1,63 @@
 package com.my.app.filters.impl;
 
-import com.my.app.filters.ImageFilter;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import com.my.app.filters.PointFilter;
 
-public class VintageFilter implements ImageFilter {
+import java.lang.ref.SoftReference;
+
+public class VintageFilter extends PointFilter {
+    private static final double VIGNETTE_STRENGTH = 0.4;
+
+    // Vintage color grading curves
+    private static final int[] GRADE_R = ChannelLuts.map(r -> (int) Math.min(255, r * 1.2 + 20));
+    private static final int[] GRADE_G = ChannelLuts.map(g -> (int) Math.min(255, g * 1.1 + 10));
+    private static final int[] GRADE_B = ChannelLuts.map(b -> (int) Math.min(255, b * 0.8 - 10));
+
+    private static final ThreadLocal<int[]> VIGNETTE_ROW = ThreadLocal.withInitial(() -> new int[0]);
+
+    // Softly held: masks too large for the shared cache live only here, and must not outlive
+    // memory pressure once the image that needed them is done
+    private volatile SoftReference<VignetteMask> lastMask = new SoftReference<>(null);
     
     @Override
-    public BufferedImage apply(BufferedImage originalImage) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        BufferedImage vintageImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    public void applyRow(int[] src, int srcIndex, int[] dst, int dstIndex, int length,
+                         int x, int y, int width, int height) {
+        // The vignette is centred on the whole frame, so tiles line up with a full-image run
+        VignetteMask mask = lastMask.get();
+        if (mask == null || !mask.matches(width, height, VIGNETTE_STRENGTH)) {
+            mask = VignetteMask.get(width, height, VIGNETTE_STRENGTH);
+            lastMask = new SoftReference<>(mask);
+        }
+        int maskRow = mask.row(y);
         
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = originalImage.getRGB(x, y);
-                
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                // Apply vintage color grading
-                int newR = (int) Math.min(255, r * 1.2 + 20);
-                int newG = (int) Math.min(255, g * 1.1 + 10);
-                int newB = (int) Math.min(255, b * 0.8 - 10);
-                
-                // Add vignette effect
-                double centerX = width / 2.0;
-                double centerY = height / 2.0;
-                double maxDistance = Math.sqrt(centerX * centerX + centerY * centerY);
-                double distance = Math.sqrt((x - centerX) * (x - centerX) + (y - centerY) * (y - centerY));
-                double vignette = 1.0 - (distance / maxDistance) * 0.4;
-                
-                newR = (int) Math.min(255, Math.max(0, newR * vignette));
-                newG = (int) Math.min(255, Math.max(0, newG * vignette));
-                newB = (int) Math.min(255, Math.max(0, newB * vignette));
-                
-                Color vintageColor = new Color(newR, newG, newB);
-                vintageImage.setRGB(x, y, vintageColor.getRGB());
+        int i = 0;
+        if (SimdSupport.ENABLED) {
+            int[] factors = VIGNETTE_ROW.get();
+            if (factors.length < length) {
+                factors = new int[length];
+                VIGNETTE_ROW.set(factors);
             }
+            for (int k = 0; k < length; k++) {
+                factors[k] = mask.factor(maskRow + mask.column(x + k));
+            }
+            i = VectorKernels.vintageRow(src, srcIndex, dst, dstIndex, length, factors);
+        }
+        for (; i < length; i++) {
+            dst[dstIndex + i] = vintage(src[srcIndex + i], mask.factor(maskRow + mask.column(x + i)));
         }
+    }
+
+    /** Vintage grading of {@code rgb} followed by a fixed-point vignette {@code factor}. */
+    static int vintage(int rgb, int factor) {
+        // Apply vintage color grading
+        int newR = GRADE_R[(rgb >> 16) & 0xFF];
+        int newG = GRADE_G[(rgb >> 8) & 0xFF];
+        int newB = GRADE_B[rgb & 0xFF];
+        
+        // Add vignette effect
+        newR = Math.min(255, Math.max(0, (newR * factor) >> VignetteMask.SHIFT));
+        newG = Math.min(255, Math.max(0, (newG * factor) >> VignetteMask.SHIFT));
+        newB = Math.min(255, Math.max(0, (newB * factor) >> VignetteMask.SHIFT));
         
-        return vintageImage;
+        return (newR << 16) | (newG << 8) | newB;
     }
-}
\ No newline at end of file
+}
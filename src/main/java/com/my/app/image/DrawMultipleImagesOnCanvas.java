@@ -1,39 +1,101 @@
 package com.my.app.image;
 
+import com.my.app.metrics.MetricsRegistry;
 import javafx.animation.AnimationTimer;
-import javafx.embed.swing.SwingFXUtils;
+import javafx.application.Platform;
 import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
+/**
+ * Shows tiles as they are produced. Tiles are copied into one persistent {@link WritableImage}
+ * through its {@link PixelWriter}, as many per frame as fit in the frame budget, and the
+ * region they touched is then redrawn on the canvas. Large tiles, such as a whole image from
+ * the synchronous path, are copied a few rows at a time across frames.
+ * <p>
+ * The frame timer only runs while there is something to draw: queueing a tile starts it and
+ * it stops once the queue is drained. The budget defaults to 8 ms, half a 60 fps frame, and
+ * can be set with the {@code imageprocessor.frameBudgetMs} system property.
+ * <p>
+ * The queue holds at most 128 MiB of pixels ({@code imageprocessor.canvasQueueMb}); producers
+ * wait while it is full. Before that, it coalesces: a tile replaces queued tiles of its run
+ * that it covers, and once a tile of a later run ({@link ImageData#getGeneration()}) arrives,
+ * every tile of earlier runs is dropped, including one half drawn. Without a canvas, or when
+ * called on the JavaFX thread, the oldest tiles are dropped instead of waiting.
+ */
 public class DrawMultipleImagesOnCanvas {
     private static final DrawMultipleImagesOnCanvas instance = new DrawMultipleImagesOnCanvas();
 
-    private BlockingQueue<ImageData> queue = new LinkedBlockingQueue<>();
+    private static final long FRAME_BUDGET_NANOS = Long.getLong("imageprocessor.frameBudgetMs", 8) * 1_000_000;
+    private static final int ROWS_PER_STEP = 64;
+    private static final long QUEUE_CAPACITY_PIXELS = (Long.getLong("imageprocessor.canvasQueueMb", 128) << 20)
+            / Integer.BYTES;
 
-    private Canvas canvas;
+    private final Deque<ImageData> queue = new ArrayDeque<>();
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Condition notFull = queueLock.newCondition();
+    private long queuedPixels;
+    private final AtomicBoolean drawing = new AtomicBoolean();
+    // The latest run seen; tiles of earlier runs are stale
+    private volatile long generation;
+
+    // Set on the JavaFX thread; the canvas is written last, so a non-null canvas means ready
+    private volatile Canvas canvas;
     private GraphicsContext gc;
+    private WritableImage frame;
+    private PixelWriter pixelWriter;
+    private AnimationTimer timer;
     private Stage primaryStage;
 
+    // The tile being copied, possibly over several frames, and its next row
+    private ImageData current;
+    private PixelBuffer currentPixels;
+    private boolean currentOpaque;
+    private int currentRow;
+    private int[] scratch = new int[0];
+
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+
+    private DrawMultipleImagesOnCanvas() {
+        MetricsRegistry.shared().registerGauge("canvas.queueDepth", this::getQueueSize);
+    }
+
     public void initialize(Stage primaryStage, int width, int height) {
         this.primaryStage = primaryStage;
-        this.canvas = new Canvas(width, height);
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    drawFrame();
+                }
+            };
+        }
+        Canvas canvas = new Canvas(width, height);
         this.gc = canvas.getGraphicsContext2D();
         gc.clearRect(0, 0, width, height);
-
-        new AnimationTimer() {
-            @Override
-            public void handle(long now) {
-                if(!queue.isEmpty()) {
-                    drawNextImage();
-                }
-            }
-        }.start();
+        this.frame = new WritableImage(width, height);
+        this.pixelWriter = frame.getPixelWriter();
+        this.current = null;
+        this.currentPixels = null;
+        resetDirty();
+        this.canvas = canvas;
 
         Group root = new Group();
         root.getChildren().add(canvas);
@@ -42,25 +104,235 @@ public class DrawMultipleImagesOnCanvas {
 
         primaryStage.sizeToScene();
         primaryStage.show();
+
+        // Tiles may have been queued before there was a canvas
+        scheduleFrames();
     }
 
-    private void drawNextImage() {
-        ImageData image = queue.poll();
-        if (image != null) {
-                gc.drawImage(SwingFXUtils.toFXImage(image.getImage(),null),
-                        image.getI(), image.getJ(), image.getX(), image.getY());
-//                System.out.println("Drawing using Thread: "+ Thread.currentThread().getName());
-//                System.out.printf("Drawing image at i: %d, j: %d%n", image.getI(), image.getJ());
+    /**
+     * Copies queued tiles into the frame image until the budget is spent, then redraws the
+     * region they covered.
+     */
+    private void drawFrame() {
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        do {
+            if (current == null && !startNextTile()) {
+                break;
+            }
+            copyRows();
+        } while (System.nanoTime() < deadline);
+
+        if (dirtyMaxX > dirtyMinX && dirtyMaxY > dirtyMinY) {
+            int width = dirtyMaxX - dirtyMinX;
+            int height = dirtyMaxY - dirtyMinY;
+            gc.clearRect(dirtyMinX, dirtyMinY, width, height);
+            gc.drawImage(frame, dirtyMinX, dirtyMinY, width, height, dirtyMinX, dirtyMinY, width, height);
+            resetDirty();
         }
 
+        if (current == null && isQueueEmpty()) {
+            timer.stop();
+            drawing.set(false);
+            // A tile queued between the check and the reset would otherwise wait for the next one
+            if (!isQueueEmpty()) {
+                scheduleFrames();
+            }
+        }
+    }
+
+    private boolean startNextTile() {
+        queueLock.lock();
+        try {
+            do {
+                current = queue.poll();
+                if (current == null) {
+                    return false;
+                }
+                queuedPixels -= pixels(current);
+            } while (isStale(current));
+            notFull.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+        BufferedImage image = current.getImage();
+        currentPixels = PixelBuffer.of(image);
+        // Only TYPE_INT_ARGB is viewed with its alpha in the top byte
+        currentOpaque = image.getType() != BufferedImage.TYPE_INT_ARGB;
+        currentRow = 0;
+        return true;
+    }
+
+    /** Copies the next rows of the current tile, clipped to the frame. */
+    private void copyRows() {
+        if (isStale(current)) {
+            current = null;
+            currentPixels = null;
+            return;
+        }
+        int x = current.getI();
+        int y = current.getJ() + currentRow;
+        int width = Math.min(currentPixels.getWidth(), (int) frame.getWidth() - x);
+        int rows = Math.min(Math.min(ROWS_PER_STEP, currentPixels.getHeight() - currentRow),
+                (int) frame.getHeight() - y);
+        if (x < 0 || current.getJ() < 0 || width <= 0 || rows <= 0) {
+            current = null;
+            currentPixels = null;
+            return;
+        }
+
+        int[] data = currentPixels.getData();
+        int start = currentPixels.index(0, currentRow);
+        int stride = currentPixels.getStride();
+        if (currentOpaque) {
+            // The top byte of packed RGB is not alpha; make every pixel opaque
+            if (scratch.length < width * rows) {
+                scratch = new int[width * rows];
+            }
+            for (int row = 0; row < rows; row++) {
+                int in = start + row * stride;
+                int out = row * width;
+                for (int column = 0; column < width; column++) {
+                    scratch[out + column] = data[in + column] | 0xFF000000;
+                }
+            }
+            pixelWriter.setPixels(x, y, width, rows, PixelFormat.getIntArgbPreInstance(), scratch, 0, width);
+        } else {
+            pixelWriter.setPixels(x, y, width, rows, PixelFormat.getIntArgbInstance(), data, start, stride);
+        }
+        markDirty(x, y, width, rows);
+
+        currentRow += rows;
+        if (currentRow >= currentPixels.getHeight()) {
+            current = null;
+            currentPixels = null;
+        }
+    }
+
+    private void markDirty(int x, int y, int width, int height) {
+        dirtyMinX = Math.min(dirtyMinX, x);
+        dirtyMinY = Math.min(dirtyMinY, y);
+        dirtyMaxX = Math.max(dirtyMaxX, x + width);
+        dirtyMaxY = Math.max(dirtyMaxY, y + height);
     }
 
+    private void resetDirty() {
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+    }
+
+    /** Starts the frame timer unless it is already running or there is no canvas yet. */
+    private void scheduleFrames() {
+        if (canvas != null && drawing.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    /**
+     * Queues {@code image} for drawing, waiting while the queue is full. Does nothing if a later
+     * run has already started drawing.
+     */
     public void addImageToQueue(ImageData image) {
+        queueLock.lock();
         try {
-            queue.put(image);
+            long imageGeneration = image.getGeneration();
+            if (imageGeneration > generation) {
+                generation = imageGeneration;
+                removeQueued(this::isStale);
+            }
+            if (isStale(image)) {
+                return;
+            }
+            removeQueued(queued -> covers(image, queued));
+
+            long imagePixels = pixels(image);
+            // An image larger than the whole queue still goes in once the queue is empty
+            while (!queue.isEmpty() && queuedPixels + imagePixels > QUEUE_CAPACITY_PIXELS) {
+                // Nothing drains the queue without a canvas, nor while the JavaFX thread waits here
+                if (canvas == null || Platform.isFxApplicationThread()) {
+                    queuedPixels -= pixels(queue.poll());
+                } else {
+                    notFull.await();
+                    if (isStale(image)) {
+                        return;
+                    }
+                }
+            }
+            queue.add(image);
+            queuedPixels += imagePixels;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             System.err.println("Interrupted while adding image to queue");
+            return;
+        } finally {
+            queueLock.unlock();
+        }
+        scheduleFrames();
+    }
+
+    /**
+     * Drops queued tiles that have not been drawn yet.
+     */
+    public void clear() {
+        queueLock.lock();
+        try {
+            queue.clear();
+            queuedPixels = 0;
+            notFull.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /** Tiles waiting to be drawn. */
+    public int getQueueSize() {
+        queueLock.lock();
+        try {
+            return queue.size();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private boolean isQueueEmpty() {
+        queueLock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private boolean isStale(ImageData image) {
+        return image.getGeneration() != 0 && image.getGeneration() < generation;
+    }
+
+    /** Whether {@code image} is from the same run as {@code queued} and hides all of it. */
+    private static boolean covers(ImageData image, ImageData queued) {
+        return image.getGeneration() == queued.getGeneration()
+                && image.getI() <= queued.getI() && image.getJ() <= queued.getJ()
+                && image.getI() + image.getImage().getWidth() >= queued.getI() + queued.getImage().getWidth()
+                && image.getJ() + image.getImage().getHeight() >= queued.getJ() + queued.getImage().getHeight();
+    }
+
+    private static long pixels(ImageData image) {
+        return (long) image.getImage().getWidth() * image.getImage().getHeight();
+    }
+
+    // Called with the lock held
+    private void removeQueued(Predicate<ImageData> condition) {
+        boolean removed = false;
+        for (Iterator<ImageData> it = queue.iterator(); it.hasNext(); ) {
+            ImageData queued = it.next();
+            if (condition.test(queued)) {
+                it.remove();
+                queuedPixels -= pixels(queued);
+                removed = true;
+            }
+        }
+        if (removed) {
+            notFull.signalAll();
         }
     }
 
@@ -7,13 +7,24 @@ public class ImageData {
     private int i;
     private int j;
     private int X;
+    // The run that produced this image; 0 if it belongs to no run
+    private long generation;
 
     public ImageData(BufferedImage image, int i, int j, int x, int y) {
+        this(image, i, j, x, y, 0);
+    }
+
+    /**
+     * An image produced by run {@code generation}. Runs are numbered upwards, and images from
+     * a run are dropped by the canvas once a later run has started drawing.
+     */
+    public ImageData(BufferedImage image, int i, int j, int x, int y, long generation) {
         this.image = image;
         this.i = i;
         this.j = j;
         X = x;
         Y = y;
+        this.generation = generation;
     }
 
     public ImageData(){}
@@ -59,4 +70,12 @@ public class ImageData {
     public void setY(int y) {
         Y = y;
     }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
 }
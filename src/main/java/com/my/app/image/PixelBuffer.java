@@ -0,0 +1,247 @@
+package com.my.app.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * A rectangular window of packed {@code 0xRRGGBB} pixels stored in an {@code int[]}.
+ * <p>
+ * Pixel {@code (x, y)} lives at {@code data[offset + y * stride + x]}. The top byte is not
+ * part of the pixel value and may hold anything (e.g. alpha when viewing a TYPE_INT_ARGB
+ * image), so readers must mask it off.
+ * <p>
+ * Every buffer also knows where it sits in its <em>frame</em>, the whole image it was cut
+ * from, so position-dependent filters give the same answer for a tile as for the full image.
+ */
+public final class PixelBuffer {
+    private final int[] data;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int frameX;
+    private final int frameY;
+    private final int frameWidth;
+    private final int frameHeight;
+
+    private PixelBuffer(int[] data, int offset, int stride, int width, int height, BufferedImage image) {
+        this(data, offset, stride, width, height, image, 0, 0, width, height);
+    }
+
+    private PixelBuffer(int[] data, int offset, int stride, int width, int height, BufferedImage image,
+                        int frameX, int frameY, int frameWidth, int frameHeight) {
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+        this.image = image;
+        this.frameX = frameX;
+        this.frameY = frameY;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+
+    /**
+     * Wraps an int array laid out row by row with the given stride.
+     */
+    public static PixelBuffer wrap(int[] data, int offset, int stride, int width, int height) {
+        if (width < 0 || height < 0 || stride < width) {
+            throw new IllegalArgumentException("Invalid geometry " + width + "x" + height + " stride " + stride);
+        }
+        if (height > 0 && (offset < 0 || offset + (long) (height - 1) * stride + width > data.length)) {
+            throw new IllegalArgumentException("Pixel window exceeds array bounds");
+        }
+        return new PixelBuffer(data, offset, stride, width, height, null);
+    }
+
+    /**
+     * Allocates a zero-filled buffer backed by a new TYPE_INT_RGB image.
+     */
+    public static PixelBuffer create(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        return new PixelBuffer(data, 0, width, width, height, image);
+    }
+
+    /**
+     * Returns the pixels of {@code image} as packed RGB.
+     * <p>
+     * TYPE_INT_RGB and TYPE_INT_ARGB images (including sub-images) are viewed in place, so
+     * writes go straight to the image. Every other type is normalized into a private copy:
+     * interleaved 8-bit sRGB rasters are unpacked directly, anything else goes through a
+     * single bulk {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} call.
+     */
+    public static PixelBuffer of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int type = image.getType();
+
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && buffer instanceof DataBufferInt intBuffer && intBuffer.getNumBanks() == 1
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel) {
+            int offset = intBuffer.getOffset() + sampleModel.getOffset(
+                    raster.getMinX() - raster.getSampleModelTranslateX(),
+                    raster.getMinY() - raster.getSampleModelTranslateY());
+            return new PixelBuffer(intBuffer.getData(), offset, sampleModel.getScanlineStride(), width, height, null);
+        }
+
+        int[] pixels = new int[width * height];
+        if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && buffer instanceof DataBufferByte byteBuffer && byteBuffer.getNumBanks() == 1
+                && raster.getSampleModel() instanceof ComponentSampleModel sampleModel) {
+            unpackInterleaved(byteBuffer, sampleModel, raster, pixels, width, height);
+        } else if (width > 0 && height > 0) {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return new PixelBuffer(pixels, 0, width, width, height, null);
+    }
+
+    private static void unpackInterleaved(DataBufferByte buffer, ComponentSampleModel sampleModel, Raster raster,
+                                          int[] pixels, int width, int height) {
+        byte[] bytes = buffer.getData();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int rOff = bandOffsets[0];
+        int gOff = bandOffsets[1];
+        int bOff = bandOffsets[2];
+        int base = buffer.getOffset()
+                + (raster.getMinY() - raster.getSampleModelTranslateY()) * scanlineStride
+                + (raster.getMinX() - raster.getSampleModelTranslateX()) * pixelStride;
+
+        for (int y = 0; y < height; y++) {
+            int in = base + y * scanlineStride;
+            int out = y * width;
+            for (int x = 0; x < width; x++, in += pixelStride) {
+                pixels[out + x] = ((bytes[in + rOff] & 0xFF) << 16)
+                        | ((bytes[in + gOff] & 0xFF) << 8)
+                        | (bytes[in + bOff] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Returns a view of a sub-rectangle sharing this buffer's storage.
+     */
+    public PixelBuffer region(int x, int y, int regionWidth, int regionHeight) {
+        if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0
+                || x + regionWidth > width || y + regionHeight > height) {
+            throw new IllegalArgumentException(String.format("Region %d,%d %dx%d outside %dx%d buffer",
+                    x, y, regionWidth, regionHeight, width, height));
+        }
+        if (x == 0 && y == 0 && regionWidth == width && regionHeight == height) {
+            return this;
+        }
+        return new PixelBuffer(data, index(x, y), stride, regionWidth, regionHeight, null,
+                frameX + x, frameY + y, frameWidth, frameHeight);
+    }
+
+    /**
+     * Returns this buffer's pixels placed at the same frame position as {@code other}, which
+     * must have the same dimensions. Used for scratch buffers standing in for a tile.
+     */
+    public PixelBuffer inFrameOf(PixelBuffer other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Size mismatch: " + width + "x" + height
+                    + " vs " + other.width + "x" + other.height);
+        }
+        return new PixelBuffer(data, offset, stride, width, height, image,
+                other.frameX, other.frameY, other.frameWidth, other.frameHeight);
+    }
+
+    /**
+     * Returns this buffer's pixels placed at ({@code x}, {@code y}) of a frame of the given
+     * size. Used for bands of an image that is never held whole.
+     */
+    public PixelBuffer inFrame(int x, int y, int wholeWidth, int wholeHeight) {
+        if (x < 0 || y < 0 || x + width > wholeWidth || y + height > wholeHeight) {
+            throw new IllegalArgumentException(String.format("%dx%d buffer at %d,%d outside %dx%d frame",
+                    width, height, x, y, wholeWidth, wholeHeight));
+        }
+        return new PixelBuffer(data, offset, stride, width, height, image, x, y, wholeWidth, wholeHeight);
+    }
+
+    /**
+     * Copies this buffer's pixels into {@code target}, which must have the same dimensions.
+     */
+    public void copyTo(PixelBuffer target) {
+        if (target.width != width || target.height != height) {
+            throw new IllegalArgumentException("Size mismatch: " + width + "x" + height
+                    + " vs " + target.width + "x" + target.height);
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(data, offset + y * stride, target.data, target.offset + y * target.stride, width);
+        }
+    }
+
+    /**
+     * Returns the TYPE_INT_RGB image backing this buffer, or a copy of the pixels if the
+     * buffer is not exactly an image created by {@link #create(int, int)}.
+     */
+    public BufferedImage toImage() {
+        if (image != null) {
+            return image;
+        }
+        PixelBuffer copy = create(width, height);
+        int[] out = copy.data;
+        for (int y = 0; y < height; y++) {
+            int in = offset + y * stride;
+            int o = y * width;
+            for (int x = 0; x < width; x++) {
+                out[o + x] = data[in + x] & 0xFFFFFF;
+            }
+        }
+        return copy.image;
+    }
+
+    public int index(int x, int y) {
+        return offset + y * stride + x;
+    }
+
+    public int[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Column of this buffer's left edge within its frame. */
+    public int getFrameX() {
+        return frameX;
+    }
+
+    /** Row of this buffer's top edge within its frame. */
+    public int getFrameY() {
+        return frameY;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+}
@@ -0,0 +1,130 @@
+package com.my.app.io;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes images on its own threads, so the threads that produce them go straight back to
+ * filtering. At most {@code capacity} images are queued or being written; {@link #submit}
+ * waits for room beyond that, which keeps a fast producer from piling up finished images in
+ * memory. Threads that must not wait, such as the JavaFX thread, use {@link #trySubmit}.
+ * <p>
+ * Writer threads are not daemons, so images already submitted are still written if the
+ * application exits without {@link #close()}; idle threads end after a second.
+ */
+public final class AsyncImageWriter implements AutoCloseable {
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_CAPACITY = 4;
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+    private static final AtomicInteger WRITER_COUNT = new AtomicInteger();
+
+    private final ImageOperations imageOperations;
+    private final Semaphore slots;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncImageWriter(ImageOperations imageOperations) {
+        this(imageOperations, DEFAULT_THREADS, DEFAULT_CAPACITY);
+    }
+
+    public AsyncImageWriter(ImageOperations imageOperations, int threads, int capacity) {
+        if (threads <= 0 || capacity < threads) {
+            throw new IllegalArgumentException("Need at least one thread and a capacity of at least the thread count");
+        }
+        this.imageOperations = imageOperations;
+        this.slots = new Semaphore(capacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "image-writer-" + WRITER_COUNT.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues {@code image} to be written to exactly {@code file}, waiting while the writer is
+     * at capacity, so it is meant for worker threads. The returned future completes with {@code file} once it is written, or
+     * exceptionally with the {@link IOException} that stopped it.
+     *
+     * @throws RejectedExecutionException if the writer has been closed
+     */
+    public CompletableFuture<File> submit(BufferedImage image, File file, WriteOptions options)
+            throws InterruptedException {
+        checkOpen();
+        slots.acquire();
+        return write(image, file, options);
+    }
+
+    /**
+     * Queues {@code image} like {@link #submit} if the writer has room, and is empty without
+     * waiting if it is at capacity.
+     *
+     * @throws RejectedExecutionException if the writer has been closed
+     */
+    public Optional<CompletableFuture<File>> trySubmit(BufferedImage image, File file, WriteOptions options) {
+        checkOpen();
+        if (!slots.tryAcquire()) {
+            return Optional.empty();
+        }
+        return Optional.of(write(image, file, options));
+    }
+
+    private void checkOpen() {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Image writer is closed");
+        }
+    }
+
+    // Runs the write in a slot already acquired. The slot is given back before the future
+    // completes, so a caller reacting to the completion finds room for its next image.
+    private CompletableFuture<File> write(BufferedImage image, File file, WriteOptions options) {
+        CompletableFuture<File> written = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                Throwable failure = null;
+                try {
+                    imageOperations.writeImage(image, file, options);
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    slots.release();
+                }
+                if (failure == null) {
+                    written.complete(file);
+                } else {
+                    written.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+        return written;
+    }
+
+    /** Images submitted but not yet written. */
+    public int getPending() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting images and waits for the submitted ones to be written.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
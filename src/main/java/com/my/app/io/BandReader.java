@@ -0,0 +1,343 @@
+package com.my.app.io;
+
+import com.my.app.image.PixelBuffer;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Decodes an image as a sequence of horizontal bands, so that only a band and its halo rows
+ * are in memory at once, however large the image.
+ * <p>
+ * Baseline JPEGs and non-interlaced RGB PNGs are decoded in a single pass into a window of
+ * rows that slides down the image: the decoder writes each row through the window's raster,
+ * and once a band and the halo below it have arrived, the band is handed out and the window
+ * moves on. Raw tiled images copy the rows of each band from the mapping. Anything else is
+ * read band by band through {@link ImageReadParam#setSourceRegion}, which is correct for every
+ * format but makes most decoders start again from the top for each band.
+ */
+public final class BandReader implements AutoCloseable {
+    /** Receives one band; {@code rows} is only valid until the call returns. */
+    @FunctionalInterface
+    public interface BandConsumer {
+        /**
+         * @param rows the band plus up to {@code halo} rows above and below it, full width, placed
+         *             in the frame of the whole image
+         * @param bandY the band's first row in the image
+         * @param bandHeight the band's row count
+         */
+        void accept(PixelBuffer rows, int bandY, int bandHeight) throws IOException;
+    }
+
+    private enum Mode { SEQUENTIAL, REGIONS, RAW }
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+
+    private final File file;
+    private final Mode mode;
+    private final int width;
+    private final int height;
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final RawTiledImage raw;
+
+    private BandReader(File file, Mode mode, int width, int height, ImageInputStream input, ImageReader reader,
+                       RawTiledImage raw) {
+        this.file = file;
+        this.mode = mode;
+        this.width = width;
+        this.height = height;
+        this.input = input;
+        this.reader = reader;
+        this.raw = raw;
+    }
+
+    /**
+     * Opens {@code file} and reads its header.
+     *
+     * @throws IOException if the file cannot be read or no installed reader supports it
+     */
+    public static BandReader open(File file) throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith("." + RawTiledImage.EXTENSION)) {
+            RawTiledImage raw = RawTiledImage.open(file.toPath());
+            return new BandReader(file, Mode.RAW, raw.getWidth(), raw.getHeight(), null, null, raw);
+        }
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Cannot open " + file);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IIOException("No ImageIO reader for " + file);
+            }
+            ImageReader reader = readers.next();
+            reader.setInput(input, true, false);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            Mode mode = (long) width * height <= Integer.MAX_VALUE && decodesTopToBottom(reader)
+                    ? Mode.SEQUENTIAL : Mode.REGIONS;
+            return new BandReader(file, mode, width, height, input, reader, null);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Hands {@code consumer} the image in bands of {@code bandHeight} rows from the top, each
+     * with up to {@code halo} neighboring rows on either side. Can be called once.
+     */
+    public void read(int bandHeight, int halo, BandConsumer consumer) throws IOException {
+        if (bandHeight <= 0 || halo < 0) {
+            throw new IllegalArgumentException("Band height must be positive and halo not negative");
+        }
+        switch (mode) {
+            case SEQUENTIAL -> readSequential(bandHeight, halo, consumer);
+            case REGIONS -> readRegions(bandHeight, halo, consumer);
+            case RAW -> readRaw(bandHeight, halo, consumer);
+        }
+    }
+
+    private void readRaw(int bandHeight, int halo, BandConsumer consumer) throws IOException {
+        for (int bandY = 0; bandY < height; bandY += bandHeight) {
+            int rows = Math.min(bandHeight, height - bandY);
+            int top = Math.max(0, bandY - halo);
+            int bottom = Math.min(height, bandY + rows + halo);
+            PixelBuffer window = PixelBuffer.create(width, bottom - top);
+            raw.copyRows(top, window);
+            consumer.accept(window.inFrame(0, top, width, height), bandY, rows);
+        }
+    }
+
+    private void readRegions(int bandHeight, int halo, BandConsumer consumer) throws IOException {
+        for (int bandY = 0; bandY < height; bandY += bandHeight) {
+            int rows = Math.min(bandHeight, height - bandY);
+            int top = Math.max(0, bandY - halo);
+            int bottom = Math.min(height, bandY + rows + halo);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+            PixelBuffer window = PixelBuffer.of(reader.read(0, param));
+            consumer.accept(window.inFrame(0, top, width, height), bandY, rows);
+        }
+    }
+
+    private void readSequential(int bandHeight, int halo, BandConsumer consumer) throws IOException {
+        ImageTypeSpecifier type = reader.getImageTypes(0).next();
+        SlidingWindow window = new SlidingWindow(Math.min(bandHeight, height), halo, consumer,
+                type.getColorModel().hasAlpha() ? ColorModel.getRGBdefault() : RGB);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setDestination(window.image);
+        reader.addIIOReadUpdateListener(window);
+        try {
+            reader.read(0, param);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            reader.removeIIOReadUpdateListener(window);
+        }
+        // A truncated file stops early; its missing rows stay black
+        window.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    /**
+     * Whether the decoder writes each row once, in order, into a destination with packed RGB
+     * or ARGB bands: true for baseline or extended JPEGs and for non-interlaced RGB(A) PNGs.
+     */
+    private static boolean decodesTopToBottom(ImageReader reader) throws IOException {
+        String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (!types.hasNext()) {
+            return false;
+        }
+        ColorModel colorModel = types.next().getColorModel();
+        if (colorModel instanceof IndexColorModel) {
+            return false;
+        }
+        int colorSpace = colorModel.getColorSpace().getType();
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (format.equals("jpeg")) {
+            // The decoder converts gray to RGB itself; CMYK needs a conversion we can't do per row
+            Node sof = child(child(metadata.getAsTree("javax_imageio_jpeg_image_1.0"), "markerSequence"), "sof");
+            return sof != null && !"2".equals(attribute(sof, "process"))
+                    && (colorSpace == ColorSpace.TYPE_RGB || colorSpace == ColorSpace.TYPE_GRAY);
+        }
+        if (format.equals("png")) {
+            Node header = child(metadata.getAsTree("javax_imageio_png_1.0"), "IHDR");
+            return header != null && "none".equals(attribute(header, "interlaceMethod"))
+                    && colorSpace == ColorSpace.TYPE_RGB;
+        }
+        return false;
+    }
+
+    private static Node child(Node node, String name) {
+        if (node == null) {
+            return null;
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (name.equals(child.getNodeName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static String attribute(Node node, String name) {
+        Node attribute = node.getAttributes().getNamedItem(name);
+        return attribute == null ? null : attribute.getNodeValue();
+    }
+
+    /**
+     * The destination the decoder writes into: an image the size of the whole file whose
+     * raster only stores the rows from {@code top} down to the end of the next band's halo.
+     * Rows outside the window are never touched by an in-order decoder, so reaching one means
+     * the file was not what {@link #decodesTopToBottom} expected.
+     */
+    private final class SlidingWindow implements IIOReadUpdateListener {
+        private final int bandHeight;
+        private final int halo;
+        private final BandConsumer consumer;
+        private final int[] pixels;
+        private final BufferedImage image;
+        private int top;
+        private int nextBandY;
+        private int decodedRows;
+
+        SlidingWindow(int bandHeight, int halo, BandConsumer consumer, ColorModel colorModel) {
+            this.bandHeight = bandHeight;
+            this.halo = halo;
+            this.consumer = consumer;
+            this.pixels = new int[Math.multiplyExact(width, Math.min(height, bandHeight + 2 * halo))];
+            SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT,
+                    width, height, ((DirectColorModel) colorModel).getMasks());
+            WritableRaster raster = Raster.createWritableRaster(sampleModel, new WindowDataBuffer(), new Point());
+            this.image = new BufferedImage(colorModel, raster, false, null);
+        }
+
+        @Override
+        public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY, int updateWidth,
+                                int updateHeight, int periodX, int periodY, int[] bands) {
+            decodedRows = Math.max(decodedRows, minY + updateHeight);
+            while (nextBandY < height && decodedRows >= Math.min(height, nextBandY + bandHeight + halo)) {
+                emitBand();
+            }
+        }
+
+        void flush() throws IOException {
+            try {
+                while (nextBandY < height) {
+                    emitBand();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void emitBand() {
+            int rows = Math.min(bandHeight, height - nextBandY);
+            int bottom = Math.min(height, nextBandY + rows + halo);
+            try {
+                consumer.accept(PixelBuffer.wrap(pixels, 0, width, width, bottom - top).inFrame(0, top, width, height),
+                        nextBandY, rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // Keep the rows the next band's halo needs and clear the rest for the decoder
+            nextBandY += rows;
+            int newTop = Math.max(top, nextBandY - halo);
+            int kept = Math.max(0, decodedRows - newTop);
+            System.arraycopy(pixels, (newTop - top) * width, pixels, 0, kept * width);
+            Arrays.fill(pixels, kept * width, pixels.length, 0);
+            top = newTop;
+        }
+
+        private int index(int i) {
+            int index = i - top * width;
+            if (index < 0 || index >= pixels.length) {
+                throw new IllegalStateException("Decoder of " + file + " left the window at row " + i / width);
+            }
+            return index;
+        }
+
+        private final class WindowDataBuffer extends DataBuffer {
+            WindowDataBuffer() {
+                super(TYPE_INT, width * height);
+            }
+
+            @Override
+            public int getElem(int bank, int i) {
+                return pixels[index(i)];
+            }
+
+            @Override
+            public void setElem(int bank, int i, int value) {
+                pixels[index(i)] = value;
+            }
+        }
+
+        // Only row updates matter
+        @Override
+        public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass,
+                                int minX, int minY, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void passComplete(ImageReader source, BufferedImage theImage) {
+        }
+
+        @Override
+        public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass, int minPass,
+                                         int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY, int width,
+                                    int height, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {
+        }
+    }
+}
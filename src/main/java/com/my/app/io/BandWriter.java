@@ -0,0 +1,377 @@
+package com.my.app.io;
+
+import com.my.app.image.PixelBuffer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes an image a band of rows at a time, top to bottom, without ever holding all of it.
+ * <p>
+ * PNG is encoded on a separate thread while the next bands are produced: the encoder pulls
+ * rows from a queue of at most {@value #QUEUE_CAPACITY} bands, so {@link #write} waits when it
+ * runs ahead. Raw tiled output is written straight into the mapped file. JPEG cannot be
+ * streamed, because the JDK's JPEG encoder asks for the whole image at once.
+ * <p>
+ * Like {@link ImageFileIO#writeImage}, the image is written to a temporary file that replaces
+ * the target only in {@link #finish()}; closing an unfinished writer deletes it.
+ */
+public final class BandWriter implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 2;
+    private static final long POLL_MILLIS = 100;
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+    private static final AtomicInteger ENCODER_COUNT = new AtomicInteger();
+    // Marks the end of an aborted image for the encoder
+    private static final PixelBuffer ABORTED = PixelBuffer.wrap(new int[0], 0, 0, 0, 0);
+
+    private final Path target;
+    private final Path temporary;
+    private final int width;
+    private final int height;
+    private final RawTiledImage raw;
+    private final BlockingQueue<PixelBuffer> bands;
+    private final FutureTask<Void> encoder;
+    private int writtenRows;
+    private boolean finished;
+
+    private BandWriter(Path target, Path temporary, int width, int height, RawTiledImage raw,
+                       BlockingQueue<PixelBuffer> bands, FutureTask<Void> encoder) {
+        this.target = target;
+        this.temporary = temporary;
+        this.width = width;
+        this.height = height;
+        this.raw = raw;
+        this.bands = bands;
+        this.encoder = encoder;
+    }
+
+    /** Whether images in {@code options}' format can be written a band at a time. */
+    public static boolean supports(WriteOptions options) {
+        return options.getFormat() != WriteOptions.Format.JPEG;
+    }
+
+    /**
+     * Starts writing a {@code width} x {@code height} image to exactly {@code file}.
+     *
+     * @throws IllegalArgumentException if the format cannot be streamed, see {@link #supports}
+     */
+    public static BandWriter open(File file, int width, int height, WriteOptions options) throws IOException {
+        if (!supports(options)) {
+            throw new IllegalArgumentException(options + " output cannot be written a band at a time");
+        }
+        File parentDir = file.getAbsoluteFile().getParentFile();
+        if (parentDir != null) {
+            Files.createDirectories(parentDir.toPath());
+        }
+        Path target = file.toPath();
+        Path temporary = target.resolveSibling("." + file.getName() + ".tmp");
+
+        if (options.getFormat() == WriteOptions.Format.RAW) {
+            RawTiledImage raw = RawTiledImage.create(temporary, width, height, RawTiledImage.Layout.INT_RGB,
+                    RawTiledImage.DEFAULT_TILE_SIZE);
+            return new BandWriter(target, temporary, width, height, raw, null, null);
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(options.getFormat().getFormatName());
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + options.getFormat());
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(options.compressionQuality());
+        }
+        // An interlaced image would be pulled seven times over
+        if (param.canWriteProgressive()) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+        }
+        BlockingQueue<PixelBuffer> bands = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        FutureTask<Void> encoder = new FutureTask<>(() -> {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+                if (output == null) {
+                    throw new IOException("Cannot open " + temporary + " for writing");
+                }
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(new QueuedRows(width, height, bands), null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return null;
+        });
+        new Thread(encoder, "band-encoder-" + ENCODER_COUNT.incrementAndGet()).start();
+        return new BandWriter(target, temporary, width, height, null, bands, encoder);
+    }
+
+    /**
+     * Writes {@code band}, full width, as the rows following those already written. The band
+     * is encoded later and must not be modified afterwards.
+     */
+    public void write(PixelBuffer band) throws IOException {
+        if (band.getWidth() != width || writtenRows + band.getHeight() > height) {
+            throw new IllegalArgumentException(String.format("%dx%d band does not fit below row %d of %dx%d image",
+                    band.getWidth(), band.getHeight(), writtenRows, width, height));
+        }
+        if (raw != null) {
+            raw.writeRows(writtenRows, band);
+        } else {
+            try {
+                while (!bands.offer(band, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (encoder.isDone()) {
+                        awaitEncoder();
+                        throw new IOException("Encoder stopped before the image was complete");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing " + target, e);
+            }
+        }
+        writtenRows += band.getHeight();
+    }
+
+    /**
+     * Waits for every row to be encoded and moves the image to its target file.
+     *
+     * @throws IllegalStateException if fewer rows than the image height were written
+     */
+    public void finish() throws IOException {
+        if (writtenRows != height) {
+            throw new IllegalStateException("Only " + writtenRows + " of " + height + " rows written");
+        }
+        if (raw != null) {
+            raw.force();
+        } else {
+            awaitEncoder();
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finished = true;
+    }
+
+    /**
+     * Stops an unfinished image and deletes its temporary file; does nothing after
+     * {@link #finish()}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (encoder != null && !encoder.isDone()) {
+            bands.clear();
+            bands.offer(ABORTED);
+            try {
+                encoder.get();
+            } catch (ExecutionException | CancellationException e) {
+                // Expected: the encoder fails on the aborted marker
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Files.deleteIfExists(temporary);
+    }
+
+    private void awaitEncoder() throws IOException {
+        try {
+            encoder.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + target, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to encode " + target, e.getCause());
+        }
+    }
+
+    /**
+     * A {@link RenderedImage} whose rows come from the band queue. The encoder asks for its
+     * rows in order, one at a time; each band is dropped once its last row has been handed
+     * over.
+     */
+    private static final class QueuedRows implements RenderedImage {
+        private final int width;
+        private final int height;
+        private final BlockingQueue<PixelBuffer> bands;
+        private final SampleModel sampleModel;
+        private PixelBuffer band;
+        private int bandY;
+
+        QueuedRows(int width, int height, BlockingQueue<PixelBuffer> bands) {
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+            this.sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, 1, RGB.getMasks());
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            if (rect.height != 1 || rect.x < 0 || rect.x + rect.width > width) {
+                throw new UnsupportedOperationException("Rows are encoded one at a time: " + rect);
+            }
+            int y = rect.y;
+            while (band == null || y >= bandY + band.getHeight()) {
+                if (band != null) {
+                    bandY += band.getHeight();
+                }
+                band = nextBand();
+            }
+            if (y < bandY) {
+                throw new UnsupportedOperationException("Row " + y + " has already been encoded");
+            }
+            int[] row = new int[rect.width];
+            System.arraycopy(band.getData(), band.index(rect.x, y - bandY), row, 0, rect.width);
+            return Raster.createPackedRaster(new DataBufferInt(row, row.length), rect.width, 1, rect.width,
+                    RGB.getMasks(), new Point(rect.x, y));
+        }
+
+        private PixelBuffer nextBand() {
+            try {
+                PixelBuffer next = bands.take();
+                if (next == ABORTED) {
+                    throw new CancellationException("Image aborted");
+                }
+                return next;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            }
+        }
+
+        @Override
+        public Raster getData() {
+            throw new UnsupportedOperationException("Rows are encoded one at a time");
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            throw new UnsupportedOperationException("Rows are encoded one at a time");
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return getData(new Rectangle(0, tileY, width, 1));
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return RGB;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        // One tile per row
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return height;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return 1;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
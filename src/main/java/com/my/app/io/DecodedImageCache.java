@@ -0,0 +1,146 @@
+package com.my.app.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Least-recently-used cache of decoded images, bounded by the bytes of their pixel data.
+ * Entries are keyed by a file's canonical path together with its modification time and size,
+ * so an edited file is decoded again and its stale entry ages out.
+ * <p>
+ * Cached images are shared between callers and must not be modified.
+ * <p>
+ * The application shares one instance, {@link #shared()}, whose capacity defaults to an
+ * eighth of the maximum heap and can be set in MiB with the {@code imageprocessor.imageCacheMb}
+ * system property; 0 disables it. Batches hold this cache in addition to their own memory
+ * budget.
+ */
+public final class DecodedImageCache {
+    private static final long DEFAULT_CAPACITY_BYTES = Long.getLong("imageprocessor.imageCacheMb",
+            Runtime.getRuntime().maxMemory() / 8 >> 20) << 20;
+
+    private static volatile DecodedImageCache shared;
+
+    /** Counters since the cache was created. */
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.0f%% hit rate), %d evictions, %d images in %.1f MiB",
+                    hits, misses, hitRate() * 100, evictions, entries, bytes / (double) (1 << 20));
+        }
+    }
+
+    private record Key(String canonicalPath, long lastModified, long size) {
+    }
+
+    private final long capacityBytes;
+    private final Map<Key, BufferedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public DecodedImageCache(long capacityBytes) {
+        if (capacityBytes < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacityBytes);
+        }
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * The application-wide cache, created on first use.
+     */
+    public static DecodedImageCache shared() {
+        DecodedImageCache cache = shared;
+        if (cache == null) {
+            synchronized (DecodedImageCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = new DecodedImageCache(Math.max(0, DEFAULT_CAPACITY_BYTES));
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /** A cache that stores nothing, for callers that read each file once. */
+    public static DecodedImageCache disabled() {
+        return new DecodedImageCache(0);
+    }
+
+    /**
+     * Returns the cached image of {@code file}, or decodes it with {@code decoder} and caches
+     * the result. Files that cannot be examined are decoded without caching.
+     */
+    public Optional<BufferedImage> get(File file, Supplier<Optional<BufferedImage>> decoder) {
+        if (capacityBytes == 0) {
+            return decoder.get();
+        }
+        Key key;
+        try {
+            key = new Key(file.getCanonicalPath(), file.lastModified(), file.length());
+        } catch (IOException e) {
+            return decoder.get();
+        }
+
+        synchronized (this) {
+            BufferedImage image = entries.get(key);
+            if (image != null) {
+                hits++;
+                return Optional.of(image);
+            }
+            misses++;
+        }
+        // Decode outside the lock; a concurrent miss on the same file just decodes it twice
+        Optional<BufferedImage> decoded = decoder.get();
+        decoded.ifPresent(image -> put(key, image));
+        return decoded;
+    }
+
+    private synchronized void put(Key key, BufferedImage image) {
+        long weight = weight(image);
+        if (weight > capacityBytes) {
+            return;
+        }
+        BufferedImage previous = entries.put(key, image);
+        bytes += weight - (previous == null ? 0 : weight(previous));
+        Iterator<BufferedImage> eldest = entries.values().iterator();
+        while (bytes > capacityBytes) {
+            bytes -= weight(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /** Bytes of pixel data held by {@code image}. */
+    private static long weight(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -1,47 +1,256 @@
 package com.my.app.io;
 
+import com.my.app.metrics.MetricsRegistry;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.Optional;
 
 public class ImageFileIO implements ImageOperations{
+    private final DecodedImageCache cache;
+
+    /** Reads full images through the shared {@link DecodedImageCache}. */
+    public ImageFileIO() {
+        this(DecodedImageCache.shared());
+    }
+
+    public ImageFileIO(DecodedImageCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reads the whole image, from the decoded-image cache when the file is unchanged since it
+     * was last decoded. The result may be shared and must not be modified.
+     */
     @Override
     public <T> Optional<BufferedImage> readImage(T source) {
         if (source instanceof String path) {
-            try {
-                File imageFile = new File(path);
-                return Optional.ofNullable(ImageIO.read(imageFile));
-            } catch (IOException e) {
-                System.err.println("Unable to read image from path: " + path);
-                e.printStackTrace();
+            return cache.get(new File(path), () -> decode(path));
+        }
+        System.err.println("ReadImage must be given a path String, type passed: " + source.getClass().getName());
+        return Optional.empty();
+    }
+
+    private static Optional<BufferedImage> decode(String path) {
+        try {
+            long start = System.nanoTime();
+            if (isRawTiled(path)) {
+                return recordDecode(RawTiledImage.open(Path.of(path)).toImage(), start);
             }
-        } else {
-            System.err.println("ReadImage must be given a path String, type passed: " + source.getClass().getName());
+            File imageFile = new File(path);
+            return recordDecode(ImageIO.read(imageFile), start);
+        } catch (IOException e) {
+            System.err.println("Unable to read image from path: " + path);
+            e.printStackTrace();
         }
         return Optional.empty();
     }
 
     @Override
-    public void sendImage(BufferedImage image, String name) {
-        String outputDir = "output/filtered_"+name+".png";
-        saveImage(image, outputDir);
+    public <T> Optional<BufferedImage> readImage(T source, ReadOptions options) {
+        if (options == ReadOptions.FULL) {
+            return readImage(source);
+        }
+        if (!(source instanceof String path)) {
+            System.err.println("ReadImage must be given a path String, type passed: " + source.getClass().getName());
+            return Optional.empty();
+        }
+        try {
+            long start = System.nanoTime();
+            if (isRawTiled(path)) {
+                return readRaw(path, options).flatMap(image -> recordDecode(image, start));
+            }
+            return withReader(path, reader -> {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (options.sourceRegion(width, height).isEmpty()) {
+                    System.err.println("Read region lies outside the " + width + "x" + height + " image: " + path);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                options.configure(param, width, height);
+                return reader.read(0, param);
+            }).flatMap(image -> recordDecode(image, start));
+        } catch (IOException e) {
+            System.err.println("Unable to read image from path: " + path);
+            e.printStackTrace();
+            return Optional.empty();
+        }
     }
 
-    public void saveImage(BufferedImage image, String relativePath) {
-        File outputFile = new File(relativePath);
+    @Override
+    public <T> Optional<ImageHeader> readHeader(T source) {
+        if (!(source instanceof String path)) {
+            return Optional.empty();
+        }
+        try {
+            if (isRawTiled(path)) {
+                return Optional.of(RawTiledImage.readHeader(Path.of(path)));
+            }
+            return withReader(path, reader -> {
+                ImageTypeSpecifier type = reader.getRawImageType(0);
+                // Unknown raw layouts are decoded to packed ARGB
+                int bytesPerPixel = type == null ? 4 : Math.max(1, (type.getColorModel().getPixelSize() + 7) / 8);
+                return new ImageHeader(reader.getWidth(0), reader.getHeight(0), bytesPerPixel);
+            });
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public DecodedImageCache getCache() {
+        return cache;
+    }
+
+    private static Optional<BufferedImage> recordDecode(BufferedImage image, long start) {
+        if (image != null) {
+            MetricsRegistry.shared().recordDecode((long) image.getWidth() * image.getHeight(), System.nanoTime() - start);
+        }
+        return Optional.ofNullable(image);
+    }
+
+    /** Raw tiled files are recognized by their extension; ImageIO has no reader for them. */
+    private static boolean isRawTiled(String path) {
+        return path.toLowerCase(Locale.ROOT).endsWith("." + RawTiledImage.EXTENSION);
+    }
 
-        File parentDir = outputFile.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
+    private static Optional<BufferedImage> readRaw(String path, ReadOptions options) throws IOException {
+        RawTiledImage raw = RawTiledImage.open(Path.of(path));
+        Rectangle region = options.sourceRegion(raw.getWidth(), raw.getHeight());
+        if (region.isEmpty()) {
+            System.err.println("Read region lies outside the " + raw.getWidth() + "x" + raw.getHeight() + " image: " + path);
+            return Optional.empty();
+        }
+        int step = options.subsamplingFor(raw.getWidth(), raw.getHeight());
+        return Optional.of(step == 1 && region.width == raw.getWidth() && region.height == raw.getHeight()
+                ? raw.toImage() : raw.toImage(region, step));
+    }
+
+    /**
+     * Runs {@code body} with a reader positioned on the file's first image; empty if no
+     * installed reader supports the file or {@code body} returns null.
+     */
+    private static <R> Optional<R> withReader(String path, ReaderBody<R> body) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(path))) {
+            if (input == null) {
+                return Optional.empty();
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return Optional.ofNullable(body.read(reader));
+            } finally {
+                reader.dispose();
+            }
         }
+    }
 
+    @FunctionalInterface
+    private interface ReaderBody<R> {
+        R read(ImageReader reader) throws IOException;
+    }
+
+    @Override
+    public void sendImage(BufferedImage image, String name) {
+        saveImage(image, name);
+    }
+
+    public void saveImage(BufferedImage image, String relativePath) {
+        File outputFile = new File(relativePath);
         try {
-            ImageIO.write(image, "png", outputFile);
+            writeImage(image, outputFile, WriteOptions.PNG);
             System.out.println("Image saved at: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             System.err.println("Failed to save image: " + e.getMessage());
         }
     }
+
+    /**
+     * Encodes into a temporary file next to {@code file} and then renames it, so {@code file}
+     * never holds a partly written image.
+     */
+    @Override
+    public void writeImage(BufferedImage image, File file, WriteOptions options) throws IOException {
+        File parentDir = file.getAbsoluteFile().getParentFile();
+        if (parentDir != null) {
+            Files.createDirectories(parentDir.toPath());
+        }
+        Path target = file.toPath();
+        Path temporary = target.resolveSibling("." + file.getName() + ".tmp");
+        long start = System.nanoTime();
+        try {
+            if (options.getFormat() == WriteOptions.Format.RAW) {
+                RawTiledImage.write(image, temporary, RawTiledImage.DEFAULT_TILE_SIZE);
+            } else {
+                encode(image, temporary, options);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            MetricsRegistry.shared().recordEncode((long) image.getWidth() * image.getHeight(), System.nanoTime() - start);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void encode(BufferedImage image, Path path, WriteOptions options) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(options.getFormat().getFormatName());
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + options.getFormat());
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(options.compressionQuality());
+        }
+        // JPEG has no alpha channel
+        BufferedImage encoded = options.getFormat() == WriteOptions.Format.JPEG && image.getColorModel().hasAlpha()
+                ? withoutAlpha(image) : image;
+
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(path.toFile())) {
+            if (output == null) {
+                throw new IOException("Cannot open " + path + " for writing");
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(encoded, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
 }
@@ -0,0 +1,38 @@
+package com.my.app.io;
+
+/**
+ * Dimensions and decoded pixel size of an image, read from its header without decoding it.
+ */
+public final class ImageHeader {
+    private final int width;
+    private final int height;
+    private final int bytesPerPixel;
+
+    public ImageHeader(int width, int height, int bytesPerPixel) {
+        this.width = width;
+        this.height = height;
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Bytes per pixel of the image ImageIO decodes to. */
+    public int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    public long getPixelCount() {
+        return (long) width * height;
+    }
+
+    /** Size of the decoded image. */
+    public long getDecodedBytes() {
+        return getPixelCount() * bytesPerPixel;
+    }
+}
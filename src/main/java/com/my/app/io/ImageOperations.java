@@ -1,10 +1,43 @@
 package com.my.app.io;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.Optional;
 
 public interface ImageOperations {
     <T> Optional<BufferedImage> readImage(T source);
 
+    /**
+     * Reads the part of the image, and at the resolution, that {@code options} select. Sources
+     * that cannot decode partially return the full image, so callers must not assume the
+     * result's size.
+     */
+    default <T> Optional<BufferedImage> readImage(T source, ReadOptions options) {
+        return readImage(source);
+    }
+
+    /**
+     * Writes the image to exactly the path {@code name}, creating missing parent directories.
+     */
     void sendImage(BufferedImage image, String name);
+
+    /**
+     * Encodes the image into exactly {@code file} with the given format and compression,
+     * creating missing parent directories. The default implementation ignores the options and
+     * delegates to {@link #sendImage(BufferedImage, String)}.
+     *
+     * @throws IOException if the image could not be written
+     */
+    default void writeImage(BufferedImage image, File file, WriteOptions options) throws IOException {
+        sendImage(image, file.getPath());
+    }
+
+    /**
+     * Reads the image's dimensions from its header without decoding the pixels. Empty when the
+     * source does not support this or cannot be read.
+     */
+    default <T> Optional<ImageHeader> readHeader(T source) {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,366 @@
+package com.my.app.io;
+
+import com.my.app.image.PixelBuffer;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An uncompressed image file of packed 32-bit pixels stored in square tiles, read and written
+ * through memory mapping. It is a scratch format for large intermediates: loading one back is
+ * a page-cache hit instead of a decode.
+ * <p>
+ * The file is a 32-byte header followed by the tiles in row-major order, each a full
+ * {@code tileSize} x {@code tileSize} block (edge tiles are padded), rows inside a tile
+ * stored top to bottom. The header holds the magic {@code IPRT}, the format version, the
+ * pixel layout, the byte order of the pixel data, width, height and tile size.
+ * <p>
+ * {@link #asBufferedImage()} wraps the mapping itself, without copying: its raster reads each
+ * pixel from the mapped tile that holds it. That suits ImageIO and cropping; bulk consumers
+ * such as filters should use {@link #copyTo(PixelBuffer)}, which copies whole tile rows.
+ * Mappings stay valid until the image is garbage collected.
+ */
+public final class RawTiledImage {
+    public static final String EXTENSION = "iprt";
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final byte[] MAGIC = "IPRT".getBytes(StandardCharsets.US_ASCII);
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    // Mapped chunks hold whole tiles and stay well under the 2 GiB limit of one mapping
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    /** How the 32-bit pixels are packed. */
+    public enum Layout {
+        /** 0x00RRGGBB. */
+        INT_RGB(new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF)),
+        /** 0xAARRGGBB, not premultiplied. */
+        INT_ARGB(ColorModel.getRGBdefault());
+
+        private final ColorModel colorModel;
+
+        Layout(ColorModel colorModel) {
+            this.colorModel = colorModel;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final Layout layout;
+    private final int tilesAcross;
+    private final int tilesPerChunk;
+    private final MappedByteBuffer[] mappings;
+    private final IntBuffer[] chunks;
+
+    private RawTiledImage(int width, int height, int tileSize, Layout layout, MappedByteBuffer[] mappings,
+                          ByteOrder order) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.layout = layout;
+        this.tilesAcross = Math.ceilDiv(width, tileSize);
+        this.tilesPerChunk = tilesPerChunk(tileSize);
+        this.mappings = mappings;
+        this.chunks = new IntBuffer[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            chunks[i] = mappings[i].order(order).asIntBuffer();
+        }
+    }
+
+    /**
+     * Writes {@code image} to {@code path}. TYPE_INT_ARGB images keep their alpha channel;
+     * everything else is stored as packed RGB.
+     */
+    public static void write(BufferedImage image, Path path, int tileSize) throws IOException {
+        Layout layout = image.getType() == BufferedImage.TYPE_INT_ARGB ? Layout.INT_ARGB : Layout.INT_RGB;
+        write(PixelBuffer.of(image), layout, path, tileSize);
+    }
+
+    public static void write(PixelBuffer pixels, Layout layout, Path path, int tileSize) throws IOException {
+        RawTiledImage target = create(path, pixels.getWidth(), pixels.getHeight(), layout, tileSize);
+        target.writeRows(0, pixels);
+        target.force();
+    }
+
+    /**
+     * Creates a {@code width} x {@code height} image at {@code path}, mapped for writing and
+     * filled with zeros, so it can be written a band of rows at a time with
+     * {@link #writeRows(int, PixelBuffer)}.
+     */
+    public static RawTiledImage create(Path path, int width, int height, Layout layout, int tileSize)
+            throws IOException {
+        if (width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid geometry " + width + "x" + height + " tile size " + tileSize);
+        }
+        ByteOrder order = ByteOrder.nativeOrder();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            header.put(MAGIC).putShort(VERSION).put((byte) layout.ordinal())
+                    .put((byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1))
+                    .putInt(width).putInt(height).putInt(tileSize);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            // Mapping past the end grows the file with zeros, which also pads the edge tiles
+            return new RawTiledImage(width, height, tileSize, layout,
+                    map(channel, FileChannel.MapMode.READ_WRITE, width, height, tileSize), order);
+        }
+    }
+
+    /**
+     * Maps the image at {@code path} read-only.
+     *
+     * @throws IOException if the file cannot be read or is not a raw tiled image
+     */
+    public static RawTiledImage open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            return new RawTiledImage(header.width(), header.height(), header.tileSize(), header.layout(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, header.width(), header.height(), header.tileSize()),
+                    header.order());
+        }
+    }
+
+    /**
+     * Reads just the header of {@code path}, without mapping the pixels.
+     *
+     * @throws IOException if the file cannot be read or is not a raw tiled image
+     */
+    public static ImageHeader readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            return new ImageHeader(header.width(), header.height(), Integer.BYTES);
+        }
+    }
+
+    private record Header(Layout layout, ByteOrder order, int width, int height, int tileSize) {
+    }
+
+    /**
+     * Reads and checks the fixed-size header, and that the file is long enough for the pixels
+     * it describes.
+     */
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Read the whole header
+        }
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        if (header.remaining() == HEADER_BYTES) {
+            header.get(magic);
+        }
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a raw tiled image: " + path);
+        }
+        short version = header.getShort();
+        int layoutIndex = header.get();
+        ByteOrder order = header.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        int width = header.getInt();
+        int height = header.getInt();
+        int tileSize = header.getInt();
+        if (version != VERSION || layoutIndex < 0 || layoutIndex >= Layout.values().length
+                || width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IOException("Unsupported raw tiled image header in " + path);
+        }
+        if (channel.size() < HEADER_BYTES + dataBytes(width, height, tileSize)) {
+            throw new IOException("Truncated raw tiled image: " + path);
+        }
+        return new Header(Layout.values()[layoutIndex], order, width, height, tileSize);
+    }
+
+    /**
+     * Returns an image whose raster reads the mapped pixels in place. The image is read-only;
+     * writing to its raster throws.
+     */
+    public BufferedImage asBufferedImage() {
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT,
+                width, height, ((DirectColorModel) layout.colorModel).getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new TiledDataBuffer(), new Point());
+        return new BufferedImage(layout.colorModel, raster, false, null);
+    }
+
+    /**
+     * Copies the pixels into {@code target}, which must have the same dimensions, a tile row
+     * at a time.
+     */
+    public void copyTo(PixelBuffer target) {
+        if (target.getWidth() != width || target.getHeight() != height) {
+            throw new IllegalArgumentException("Target is " + target.getWidth() + "x" + target.getHeight()
+                    + ", image is " + width + "x" + height);
+        }
+        copyRows(0, target);
+    }
+
+    /**
+     * Copies the full-width rows from {@code y} down into {@code target}, which must be as wide
+     * as the image. Only the tiles of those rows are read.
+     */
+    public void copyRows(int y, PixelBuffer target) {
+        checkRows(y, target);
+        int[] data = target.getData();
+        for (int row = 0; row < target.getHeight(); row++) {
+            for (int x = 0; x < width; x += tileSize) {
+                int tileIndex = tileIndex(x, y + row);
+                chunks[tileIndex / tilesPerChunk].get(rowStart(tileIndex, y + row), data, target.index(x, row),
+                        Math.min(tileSize, width - x));
+            }
+        }
+    }
+
+    /**
+     * Writes {@code rows}, which must be as wide as the image, over the rows from {@code y}
+     * down. Only images from {@link #create} are writable.
+     */
+    public void writeRows(int y, PixelBuffer rows) {
+        checkRows(y, rows);
+        int[] data = rows.getData();
+        for (int row = 0; row < rows.getHeight(); row++) {
+            for (int x = 0; x < width; x += tileSize) {
+                int tileIndex = tileIndex(x, y + row);
+                chunks[tileIndex / tilesPerChunk].put(rowStart(tileIndex, y + row), data, rows.index(x, row),
+                        Math.min(tileSize, width - x));
+            }
+        }
+    }
+
+    /** Flushes written pixels to the file. */
+    public void force() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    /** Copies the pixels into a new TYPE_INT_RGB (or ARGB) image. */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(width, height, imageType());
+        copyTo(PixelBuffer.of(image));
+        return image;
+    }
+
+    /**
+     * Copies every {@code subsampling}-th pixel of every {@code subsampling}-th row of
+     * {@code region} into a new image. Only the tiles the region touches are read.
+     */
+    public BufferedImage toImage(Rectangle region, int subsampling) {
+        Rectangle source = region.intersection(new Rectangle(width, height));
+        if (source.isEmpty() || subsampling <= 0) {
+            throw new IllegalArgumentException("Nothing to copy from " + region + " every " + subsampling + " pixels");
+        }
+        BufferedImage image = new BufferedImage(Math.ceilDiv(source.width, subsampling),
+                Math.ceilDiv(source.height, subsampling), imageType());
+        PixelBuffer target = PixelBuffer.of(image);
+        int[] data = target.getData();
+        for (int row = 0; row < target.getHeight(); row++) {
+            int y = source.y + row * subsampling;
+            int index = target.index(0, row);
+            for (int column = 0; column < target.getWidth(); column++) {
+                data[index + column] = pixel(source.x + column * subsampling, y);
+            }
+        }
+        return image;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    private int imageType() {
+        return layout == Layout.INT_ARGB ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    private void checkRows(int y, PixelBuffer rows) {
+        if (rows.getWidth() != width || y < 0 || y + rows.getHeight() > height) {
+            throw new IllegalArgumentException(String.format("Rows %d..%d of width %d outside %dx%d image",
+                    y, y + rows.getHeight(), rows.getWidth(), width, height));
+        }
+    }
+
+    private int tileIndex(int x, int y) {
+        return (y / tileSize) * tilesAcross + x / tileSize;
+    }
+
+    /** Offset within its chunk of row {@code y} of tile {@code tileIndex}. */
+    private int rowStart(int tileIndex, int y) {
+        return (tileIndex % tilesPerChunk) * tileSize * tileSize + (y % tileSize) * tileSize;
+    }
+
+    private int pixel(int x, int y) {
+        int index = tileIndex(x, y);
+        return chunks[index / tilesPerChunk].get(rowStart(index, y) + x % tileSize);
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, int width, int height,
+                                          int tileSize) throws IOException {
+        long tileBytes = (long) tileSize * tileSize * Integer.BYTES;
+        long tiles = (long) Math.ceilDiv(width, tileSize) * Math.ceilDiv(height, tileSize);
+        int tilesPerChunk = tilesPerChunk(tileSize);
+        MappedByteBuffer[] mappings = new MappedByteBuffer[(int) Math.ceilDiv(tiles, tilesPerChunk)];
+        for (int i = 0; i < mappings.length; i++) {
+            long first = (long) i * tilesPerChunk;
+            long bytes = Math.min(tilesPerChunk, tiles - first) * tileBytes;
+            mappings[i] = channel.map(mode, HEADER_BYTES + first * tileBytes, bytes);
+        }
+        return mappings;
+    }
+
+    private static int tilesPerChunk(int tileSize) {
+        return (int) Math.max(1, MAX_CHUNK_BYTES / ((long) tileSize * tileSize * Integer.BYTES));
+    }
+
+    private static long dataBytes(int width, int height, int tileSize) {
+        return (long) Math.ceilDiv(width, tileSize) * Math.ceilDiv(height, tileSize) * tileSize * tileSize
+                * Integer.BYTES;
+    }
+
+    /**
+     * Presents the tiles as the row-major bank a {@link SinglePixelPackedSampleModel} expects.
+     */
+    private final class TiledDataBuffer extends DataBuffer {
+        TiledDataBuffer() {
+            super(TYPE_INT, Math.multiplyExact(width, height));
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return pixel(i % width, i / width);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int value) {
+            throw new UnsupportedOperationException("Raw tiled images are mapped read-only");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.my.app.io;
+
+import javax.imageio.ImageReadParam;
+import java.awt.Rectangle;
+
+/**
+ * What part of an image to decode and at what resolution. A region limits decoding to a
+ * rectangle of the source; subsampling keeps every n-th pixel of every n-th row; a maximum
+ * dimension picks the smallest subsampling that brings the decoded width and height within
+ * it. Decoders skip the discarded pixels instead of producing a full image first, so a preview
+ * of a large file costs a fraction of the memory and time of a full decode.
+ * <p>
+ * Instances are immutable; the {@code with} methods return modified copies.
+ */
+public final class ReadOptions {
+    /** Decodes the whole image at full resolution. */
+    public static final ReadOptions FULL = new ReadOptions(null, 1, 0);
+
+    private final Rectangle region;
+    private final int subsampling;
+    private final int maxDimension;
+
+    private ReadOptions(Rectangle region, int subsampling, int maxDimension) {
+        this.region = region;
+        this.subsampling = subsampling;
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * Decodes the whole image, subsampled so that neither side exceeds {@code maxDimension}.
+     */
+    public static ReadOptions fitWithin(int maxDimension) {
+        return FULL.withMaxDimension(maxDimension);
+    }
+
+    /** Decodes only {@code region}, in source pixel coordinates; it is clipped to the image. */
+    public ReadOptions withRegion(Rectangle region) {
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException("Region must not be empty: " + region);
+        }
+        return new ReadOptions(new Rectangle(region), subsampling, maxDimension);
+    }
+
+    /** Keeps every {@code subsampling}-th column and row. */
+    public ReadOptions withSubsampling(int subsampling) {
+        if (subsampling <= 0) {
+            throw new IllegalArgumentException("Subsampling must be positive: " + subsampling);
+        }
+        return new ReadOptions(region, subsampling, maxDimension);
+    }
+
+    /** Subsamples at least enough that neither side exceeds {@code maxDimension}; 0 for no limit. */
+    public ReadOptions withMaxDimension(int maxDimension) {
+        if (maxDimension < 0) {
+            throw new IllegalArgumentException("Maximum dimension must not be negative: " + maxDimension);
+        }
+        return new ReadOptions(region, subsampling, maxDimension);
+    }
+
+    public Rectangle getRegion() {
+        return region == null ? null : new Rectangle(region);
+    }
+
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * The part of a {@code width} x {@code height} image these options decode; empty if the
+     * region lies outside it.
+     */
+    public Rectangle sourceRegion(int width, int height) {
+        Rectangle bounds = new Rectangle(width, height);
+        return region == null ? bounds : bounds.intersection(region);
+    }
+
+    /** The subsampling step used for a {@code width} x {@code height} image. */
+    public int subsamplingFor(int width, int height) {
+        Rectangle source = sourceRegion(width, height);
+        int step = subsampling;
+        if (maxDimension > 0) {
+            step = Math.max(step, Math.ceilDiv(Math.max(source.width, source.height), maxDimension));
+        }
+        return step;
+    }
+
+    /**
+     * Sets up {@code param} to decode these options from a {@code width} x {@code height} image.
+     */
+    void configure(ImageReadParam param, int width, int height) {
+        if (region != null) {
+            param.setSourceRegion(sourceRegion(width, height));
+        }
+        int step = subsamplingFor(width, height);
+        if (step > 1) {
+            param.setSourceSubsampling(step, step, 0, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOptions[region=" + region + ", subsampling=" + subsampling + ", maxDimension=" + maxDimension + "]";
+    }
+}
@@ -0,0 +1,117 @@
+package com.my.app.io;
+
+import java.util.Locale;
+
+/**
+ * How to encode an image: PNG at a deflate level from 0 (stored, fastest) to 9 (smallest),
+ * JPEG at a quality from 0 to 1, or uncompressed {@link RawTiledImage} for intermediates that
+ * will be read back. Low PNG levels trade file size for faster encoding.
+ */
+public final class WriteOptions {
+    public enum Format {
+        PNG("png", "png"),
+        JPEG("jpeg", "jpg"),
+        RAW("raw", RawTiledImage.EXTENSION);
+
+        private final String formatName;
+        private final String extension;
+
+        Format(String formatName, String extension) {
+            this.formatName = formatName;
+            this.extension = extension;
+        }
+
+        /** The ImageIO format name; RAW is written by {@link RawTiledImage} instead. */
+        public String getFormatName() {
+            return formatName;
+        }
+
+        /** File name extension, without the dot. */
+        public String getExtension() {
+            return extension;
+        }
+
+        /** Parses {@code png}, {@code jpeg}, {@code jpg} or {@code raw}, ignoring case. */
+        public static Format parse(String name) {
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "png" -> PNG;
+                case "jpeg", "jpg" -> JPEG;
+                case "raw" -> RAW;
+                default -> throw new IllegalArgumentException("Unknown image format: " + name);
+            };
+        }
+    }
+
+    /** The level the JDK's PNG writer uses by default. */
+    public static final int DEFAULT_PNG_LEVEL = 4;
+    public static final float DEFAULT_JPEG_QUALITY = 0.9f;
+
+    /** PNG at the default level. */
+    public static final WriteOptions PNG = png(DEFAULT_PNG_LEVEL);
+    /** Uncompressed tiles of {@link RawTiledImage#DEFAULT_TILE_SIZE} pixels. */
+    public static final WriteOptions RAW = new WriteOptions(Format.RAW, DEFAULT_PNG_LEVEL, DEFAULT_JPEG_QUALITY);
+
+    private final Format format;
+    private final int pngLevel;
+    private final float jpegQuality;
+
+    private WriteOptions(Format format, int pngLevel, float jpegQuality) {
+        this.format = format;
+        this.pngLevel = pngLevel;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public static WriteOptions png(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("PNG level must be between 0 and 9: " + level);
+        }
+        return new WriteOptions(Format.PNG, level, DEFAULT_JPEG_QUALITY);
+    }
+
+    public static WriteOptions jpeg(float quality) {
+        if (!(quality >= 0 && quality <= 1)) {
+            throw new IllegalArgumentException("JPEG quality must be between 0 and 1: " + quality);
+        }
+        return new WriteOptions(Format.JPEG, DEFAULT_PNG_LEVEL, quality);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getPngLevel() {
+        return pngLevel;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * The ImageWriteParam compression quality for these options. The JDK's PNG writer deflates
+     * at level {@code 9 - round(9 * quality)}.
+     */
+    float compressionQuality() {
+        return format == Format.PNG ? (9 - pngLevel) / 9f : jpegQuality;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WriteOptions options && format == options.format
+                && compressionQuality() == options.compressionQuality();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * format.hashCode() + Float.hashCode(compressionQuality());
+    }
+
+    @Override
+    public String toString() {
+        return switch (format) {
+            case PNG -> "PNG(level=" + pngLevel + ")";
+            case JPEG -> "JPEG(quality=" + jpegQuality + ")";
+            case RAW -> "RAW";
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package com.my.app.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects performance metrics: filter run latencies and throughput per filter, tile times,
+ * decode and encode times, batch item rates, and gauges such as queue depths that are read
+ * when a snapshot is taken.
+ * <p>
+ * {@link #snapshot()} flattens everything into names such as {@code filter.BlurFilter.p99Ms}
+ * or {@code filter.GreyScaleFilter+SepiaFilter.count} for a chain, which the {@link #shared()} registry publishes as attributes of the JMX MBean
+ * {@value #OBJECT_NAME} and hands to any {@link MetricsReporter} added to it. Setting the
+ * {@code imageprocessor.metricsReportSeconds} system property reports to the console at that
+ * interval. Values accumulate from the start of the process.
+ */
+public final class MetricsRegistry {
+    public static final String OBJECT_NAME = "com.my.app:type=Metrics";
+
+    private static final long REPORT_SECONDS = Long.getLong("imageprocessor.metricsReportSeconds", 0);
+
+    private static volatile MetricsRegistry shared;
+
+    private final Map<String, TimedWork> filters = new ConcurrentHashMap<>();
+    private final LatencyHistogram tiles = new LatencyHistogram();
+    private final TimedWork decodes = new TimedWork();
+    private final TimedWork encodes = new TimedWork();
+    private final RateMeter batchItems = new RateMeter();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<MetricsReporter, ScheduledFuture<?>> reporters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reportingThread;
+
+    /**
+     * The application-wide registry, created and registered with the platform MBean server on
+     * first use.
+     */
+    public static MetricsRegistry shared() {
+        MetricsRegistry registry = shared;
+        if (registry == null) {
+            synchronized (MetricsRegistry.class) {
+                registry = shared;
+                if (registry == null) {
+                    registry = new MetricsRegistry();
+                    registry.registerMBean();
+                    if (REPORT_SECONDS > 0) {
+                        registry.addReporter(MetricsReporter.console(), Duration.ofSeconds(REPORT_SECONDS));
+                    }
+                    shared = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /** Records a completed run of the filter named {@code filterName} over {@code pixels} pixels. */
+    public void recordFilterRun(String filterName, long pixels, long nanos) {
+        filter(filterName).record(pixels, nanos);
+    }
+
+    /** Records a run of the filter that was cancelled or timed out before it completed. */
+    public void recordFilterStopped(String filterName) {
+        filter(filterName).stopped.increment();
+    }
+
+    public void recordTile(long nanos) {
+        tiles.record(nanos);
+    }
+
+    public void recordDecode(long pixels, long nanos) {
+        decodes.record(pixels, nanos);
+    }
+
+    public void recordEncode(long pixels, long nanos) {
+        encodes.record(pixels, nanos);
+    }
+
+    public void recordBatchItem() {
+        batchItems.mark(1);
+    }
+
+    /** Reports {@code value}, read at every snapshot, as {@code name}; replaces an earlier gauge of that name. */
+    public void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Every metric by name; durations are in milliseconds and rates per second. */
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> metrics = new TreeMap<>();
+        filters.forEach((name, work) -> {
+            String prefix = "filter." + name;
+            work.addTo(metrics, prefix);
+            metrics.put(prefix + ".stopped", work.stopped.sum());
+        });
+        addHistogram(metrics, "tile", tiles.snapshot());
+        decodes.addTo(metrics, "io.decode");
+        encodes.addTo(metrics, "io.encode");
+        metrics.put("batch.items", batchItems.getCount());
+        metrics.put("batch.itemsPerSecond", batchItems.getRatePerSecond());
+        gauges.forEach((name, value) -> metrics.put(name, value.getAsLong()));
+        return metrics;
+    }
+
+    /** Hands a snapshot to {@code reporter} every {@code period}, on a daemon thread. */
+    public synchronized void addReporter(MetricsReporter reporter, Duration period) {
+        if (period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("Report period must be positive: " + period);
+        }
+        if (reportingThread == null) {
+            reportingThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long millis = period.toMillis();
+        ScheduledFuture<?> previous = reporters.put(reporter, reportingThread.scheduleAtFixedRate(() -> {
+            try {
+                reporter.report(snapshot());
+            } catch (RuntimeException e) {
+                System.err.println("Metrics reporter failed: " + e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    public void removeReporter(MetricsReporter reporter) {
+        ScheduledFuture<?> future = reporters.remove(reporter);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private TimedWork filter(String filterName) {
+        return filters.computeIfAbsent(filterName, name -> new TimedWork());
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Another class loader's registry got there first; this one still records
+        } catch (JMException e) {
+            System.err.println("Unable to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static void addHistogram(Map<String, Number> metrics, String prefix, LatencyHistogram.Snapshot snapshot) {
+        metrics.put(prefix + ".count", snapshot.count());
+        metrics.put(prefix + ".meanMs", snapshot.meanMillis());
+        metrics.put(prefix + ".p50Ms", snapshot.p50Millis());
+        metrics.put(prefix + ".p99Ms", snapshot.p99Millis());
+        metrics.put(prefix + ".maxMs", snapshot.maxMillis());
+    }
+
+    /** Latencies of some kind of work over images, and the pixel throughput while doing it. */
+    private static final class TimedWork {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder pixels = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder stopped = new LongAdder();
+
+        void record(long workPixels, long nanos) {
+            latency.record(nanos);
+            pixels.add(workPixels);
+            busyNanos.add(nanos);
+        }
+
+        void addTo(Map<String, Number> metrics, String prefix) {
+            addHistogram(metrics, prefix, latency.snapshot());
+            long nanos = busyNanos.sum();
+            metrics.put(prefix + ".megapixelsPerSecond", nanos == 0 ? 0.0 : pixels.sum() * 1e3 / nanos);
+        }
+    }
+}
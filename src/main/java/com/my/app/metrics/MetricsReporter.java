@@ -0,0 +1,22 @@
+package com.my.app.metrics;
+
+import java.util.SortedMap;
+
+/**
+ * Receives periodic snapshots of {@link MetricsRegistry}, for example to forward them to a
+ * monitoring system. Called on the registry's reporting thread.
+ */
+@FunctionalInterface
+public interface MetricsReporter {
+    void report(SortedMap<String, Number> metrics);
+
+    /** Prints every metric on its own line to standard output. */
+    static MetricsReporter console() {
+        return metrics -> {
+            StringBuilder report = new StringBuilder("Metrics:");
+            metrics.forEach((name, value) -> report.append("\n  ").append(name).append(" = ")
+                    .append(value instanceof Double d ? String.format("%.3f", d) : value));
+            System.out.println(report);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.my.app.metrics;
+
+/**
+ * Counts events and their rate over the last {@value #WINDOW_SECONDS} seconds.
+ */
+public final class RateMeter {
+    private static final int WINDOW_SECONDS = 10;
+
+    private final long[] counts = new long[WINDOW_SECONDS];
+    // The second each slot counts, so stale slots are recognized
+    private final long[] seconds = new long[WINDOW_SECONDS];
+    private long total;
+
+    public synchronized void mark(long events) {
+        long second = currentSecond();
+        int slot = Math.floorMod(second, WINDOW_SECONDS);
+        if (seconds[slot] != second) {
+            seconds[slot] = second;
+            counts[slot] = 0;
+        }
+        counts[slot] += events;
+        total += events;
+    }
+
+    public synchronized long getCount() {
+        return total;
+    }
+
+    public synchronized double getRatePerSecond() {
+        long second = currentSecond();
+        long recent = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (second - seconds[i] < WINDOW_SECONDS) {
+                recent += counts[i];
+            }
+        }
+        return (double) recent / WINDOW_SECONDS;
+    }
+
+    private static long currentSecond() {
+        return Math.floorDiv(System.nanoTime(), 1_000_000_000L);
+    }
+}
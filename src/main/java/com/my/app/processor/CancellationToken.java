@@ -0,0 +1,87 @@
+package com.my.app.processor;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lets the caller of a long-running operation stop it. An operation checks its token between
+ * units of work, before every tile and every band of rows, and gives up once the token has
+ * been cancelled or its deadline has passed; work not started by then never runs.
+ * <p>
+ * A token is cancelled by {@link #cancel()}, or by a condition it was created from, such as a
+ * task's own cancellation flag. Tokens are thread-safe.
+ */
+public final class CancellationToken {
+    private static final CancellationToken NONE = new CancellationToken(() -> false, Long.MAX_VALUE);
+
+    private final BooleanSupplier condition;
+    // System.nanoTime() at which the deadline passes; Long.MAX_VALUE for none
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+
+    private CancellationToken(BooleanSupplier condition, long deadlineNanos) {
+        this.condition = condition;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** A token that never stops anything. */
+    public static CancellationToken none() {
+        return NONE;
+    }
+
+    /** A token that stops operations once {@link #cancel()} is called. */
+    public static CancellationToken create() {
+        return of(() -> false);
+    }
+
+    /** A token that is cancelled as soon as {@code cancelled} returns true, or by {@link #cancel()}. */
+    public static CancellationToken of(BooleanSupplier cancelled) {
+        return new CancellationToken(cancelled, Long.MAX_VALUE);
+    }
+
+    /**
+     * A token cancelled along with this one that also expires {@code timeout} from now, or at
+     * this token's deadline if that is earlier.
+     */
+    public CancellationToken withTimeout(Duration timeout) {
+        long now = System.nanoTime();
+        long nanos = timeout.isNegative() ? 0 : Math.min(timeout.toNanos(), Long.MAX_VALUE - now);
+        return new CancellationToken(this::isCancelled, Math.min(deadlineNanos, now + nanos));
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || condition.getAsBoolean();
+    }
+
+    /** Whether the deadline has passed; never true for a token without one. */
+    public boolean isExpired() {
+        return deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /** Whether operations checking this token should stop. */
+    public boolean isStopped() {
+        return isCancelled() || isExpired();
+    }
+
+    /**
+     * @throws CancellationException if the token has been cancelled or has expired
+     */
+    public void throwIfStopped() {
+        if (isCancelled()) {
+            throw new CancellationException("Cancelled");
+        }
+        if (isExpired()) {
+            throw new CancellationException("Deadline passed");
+        }
+    }
+
+    // Whether checks can be skipped altogether
+    boolean canStop() {
+        return this != NONE;
+    }
+}
@@ -0,0 +1,128 @@
+package com.my.app.processor;
+
+import com.my.app.metrics.MetricsRegistry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A work-stealing pool for filter work, sized to the hardware rather than to the number of
+ * tiles.
+ * <p>
+ * The application shares one instance, {@link #shared()}, whose parallelism defaults to the
+ * number of available processors and can be set with the {@code imageprocessor.parallelism}
+ * system property. Its worker threads are daemons, so an unclosed pool never keeps the JVM
+ * alive, but the application should still {@link #close()} it on exit. Its queue depth and
+ * active thread count are published as the {@code pool.*} gauges of {@link MetricsRegistry}.
+ * <p>
+ * Jobs that drive the pool, such as a JavaFX task that decodes a file and then filters it, run
+ * on a few separate daemon threads ({@code imageprocessor.jobThreads}, default 4) rather than
+ * on the workers: they spend most of their time blocked on I/O, on queues or on their own
+ * tiles, and a blocked worker is one less thread filtering.
+ */
+public final class ComputePool implements AutoCloseable {
+    private static final int DEFAULT_PARALLELISM =
+            Integer.getInteger("imageprocessor.parallelism", Runtime.getRuntime().availableProcessors());
+    private static final int JOB_THREADS = Math.max(1, Integer.getInteger("imageprocessor.jobThreads", 4));
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final AtomicInteger JOB_THREAD_COUNT = new AtomicInteger();
+
+    private static volatile ComputePool shared;
+
+    private final ForkJoinPool pool;
+    private final ThreadPoolExecutor jobs;
+
+    public ComputePool(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.jobs = new ThreadPoolExecutor(JOB_THREADS, JOB_THREADS, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "compute-job-" + JOB_THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        jobs.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The application-wide pool, created on first use.
+     */
+    public static ComputePool shared() {
+        ComputePool pool = shared;
+        if (pool == null) {
+            synchronized (ComputePool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = new ComputePool(Math.max(1, DEFAULT_PARALLELISM));
+                    MetricsRegistry metrics = MetricsRegistry.shared();
+                    metrics.registerGauge("pool.parallelism", pool::getParallelism);
+                    metrics.registerGauge("pool.queuedTasks", pool::getQueuedTaskCount);
+                    metrics.registerGauge("pool.activeThreads", pool::getActiveThreadCount);
+                    shared = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Runs {@code task} and waits for it. Called from one of this pool's workers, the task runs
+     * inside the current computation instead of blocking a thread.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return pool.invoke(task);
+    }
+
+    /**
+     * Runs a background job, such as a JavaFX task driving the processor, on one of the job
+     * threads. Work it hands to {@link #invoke} runs on the pool while the job waits.
+     */
+    public void execute(Runnable job) {
+        jobs.execute(job);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /** Tasks waiting to run: submitted runs plus tiles queued by workers. An estimate. */
+    public long getQueuedTaskCount() {
+        return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+    }
+
+    /** Workers currently running or stealing tasks. An estimate. */
+    public int getActiveThreadCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    public boolean isClosed() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * Stops accepting work and waits briefly for running jobs and tasks to finish.
+     */
+    @Override
+    public void close() {
+        jobs.shutdown();
+        pool.shutdown();
+        try {
+            if (!jobs.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                jobs.shutdownNow();
+            }
+            if (!pool.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            jobs.shutdownNow();
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,135 +3,293 @@ package com.my.app.processor;
 import com.my.app.filters.ImageFilter;
 import com.my.app.image.DrawMultipleImagesOnCanvas;
 import com.my.app.image.ImageData;
+import com.my.app.image.PixelBuffer;
+import com.my.app.metrics.MetricsRegistry;
 
-import java.awt.*;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ImageProcessor {
-    private ExecutorService executorService;
-    private DrawMultipleImagesOnCanvas drawFunc;
+    public static final int AUTO_TILE_SIZE = 0;
 
+    // Numbers every run across processors, so the canvas can tell which tiles are stale
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+    private static final MetricsRegistry METRICS = MetricsRegistry.shared();
+
+    private final ComputePool pool;
+    private final TileSink tileSink;
+    private final TileResultCache tileCache;
+
+    /**
+     * A processor on the shared pool that queues tiles for {@link DrawMultipleImagesOnCanvas}
+     * and reuses tile results from {@link TileResultCache#shared()}.
+     */
     public ImageProcessor(){
-        this.executorService = Executors.newFixedThreadPool(100);
-        this.drawFunc = DrawMultipleImagesOnCanvas.getInstance();
+        this(ComputePool.shared());
+    }
+
+    public ImageProcessor(ComputePool pool) {
+        this(pool, DrawMultipleImagesOnCanvas.getInstance()::addImageToQueue);
+    }
+
+    /**
+     * A processor that hands tiles to {@code tileSink}; with {@link TileSink#NONE} it touches no
+     * JavaFX classes at all.
+     */
+    public ImageProcessor(ComputePool pool, TileSink tileSink) {
+        this(pool, tileSink, TileResultCache.shared());
+    }
+
+    /**
+     * A processor that looks up async tile results in {@code tileCache} before filtering them;
+     * pass {@link TileResultCache#disabled()} when the same pixels are never filtered twice.
+     */
+    public ImageProcessor(ComputePool pool, TileSink tileSink, TileResultCache tileCache) {
+        this.pool = pool;
+        this.tileSink = tileSink;
+        this.tileCache = tileCache;
+    }
+
+    public ComputePool getPool() {
+        return pool;
+    }
+
+    public TileResultCache getTileCache() {
+        return tileCache;
     }
 
+    /**
+     * Filters {@code image}. In async mode it is split into square tiles of {@code num}
+     * pixels (edge tiles may be smaller), or into automatically sized tiles when
+     * {@code num} is {@link #AUTO_TILE_SIZE}.
+     */
     public BufferedImage processImage(BufferedImage image, int num, ImageFilter filter, boolean async) {
+        return processImage(image, num, filter, async, CancellationToken.none()).getImage().orElseThrow();
+    }
+
+    /**
+     * Filters {@code image} like {@link #processImage(BufferedImage, int, ImageFilter, boolean)}
+     * until {@code token} stops it. The token is checked before every tile, and in sync mode
+     * the image is filtered in strips of rows so it can be checked between them; tiles not
+     * started by then never run. A stopped run returns a cancelled or timed-out result without
+     * an image.
+     */
+    public ProcessingResult processImage(BufferedImage image, int num, ImageFilter filter, boolean async,
+                                         CancellationToken token) {
         if (async) {
-            return processImageAsync(image, num, filter);
+            List<Rectangle> tiles = num <= AUTO_TILE_SIZE
+                    ? TilePlanner.plan(image.getWidth(), image.getHeight(), filter.getNeighborhoodRadius(),
+                            TilePlanner.Layout.SQUARE, pool.getParallelism())
+                    : TilePlanner.squares(image.getWidth(), image.getHeight(), num);
+            return processImageAsync(image, tiles, filter, token);
         } else {
-            return processImageSync(image, filter);
+            return processImageSync(image, filter, token);
         }
     }
 
-    private BufferedImage processImageSync(BufferedImage image, ImageFilter filter) {
-        long startTime = System.currentTimeMillis();
+    /**
+     * Filters {@code image} asynchronously with tile geometry picked by {@link TilePlanner}.
+     */
+    public BufferedImage processImage(BufferedImage image, ImageFilter filter, TilePlanner.Layout layout) {
+        List<Rectangle> tiles = TilePlanner.plan(image.getWidth(), image.getHeight(),
+                filter.getNeighborhoodRadius(), layout, pool.getParallelism());
+        return processImageAsync(image, tiles, filter, CancellationToken.none()).getImage().orElseThrow();
+    }
+
+    private ProcessingResult processImageSync(BufferedImage image, ImageFilter filter, CancellationToken token) {
+        long startTime = System.nanoTime();
         int width = image.getWidth();
         int height = image.getHeight();
 
-        BufferedImage filteredImage = filter.apply(image);
-        ImageData imageData = new ImageData(filteredImage, 0, 0, width, height);
+        long generation = GENERATIONS.incrementAndGet();
+        BufferedImage filteredImage;
+        if (token.canStop()) {
+            // Strips come out exactly as a whole-image run, and the token is checked between them.
+            // They bypass the tile cache, which only holds async tiles.
+            int radius = filter.getNeighborhoodRadius();
+            PixelBuffer source = PixelBuffer.of(image);
+            PixelBuffer target = PixelBuffer.create(width, height);
+            for (Rectangle strip : TilePlanner.plan(width, height, radius, TilePlanner.Layout.ROW_STRIPS, 1)) {
+                if (token.isStopped()) {
+                    return stopped(filter, token, startTime);
+                }
+                filterWithHalo(filter, source, strip, radius, target.region(strip.x, strip.y, strip.width,
+                        strip.height));
+            }
+            filteredImage = filter.toImage(target);
+        } else {
+            filteredImage = filter.apply(image);
+        }
+        ImageData imageData = new ImageData(filteredImage, 0, 0, width, height, generation);
 
-        drawFunc.addImageToQueue(imageData);
-        System.out.println("Image Processed synchronously & also added to queue");
+        tileSink.accept(imageData);
 
-        long endTime = System.currentTimeMillis();
-        System.out.println("Total processing time: " + (endTime - startTime) + " ms");
+        long elapsedNanos = System.nanoTime() - startTime;
+        METRICS.recordFilterRun(metricName(filter), (long) width * height, elapsedNanos);
 
-        return filteredImage;
+        return ProcessingResult.completed(filteredImage, elapsedNanos / 1_000_000);
 
     }
 
-    private BufferedImage processImageAsync(BufferedImage image, int num, ImageFilter filter) {
-        long startTime = System.currentTimeMillis();
+    private ProcessingResult processImageAsync(BufferedImage image, List<Rectangle> tiles, ImageFilter filter,
+                                               CancellationToken token) {
+        long startTime = System.nanoTime();
 
         int width = image.getWidth();
         int height = image.getHeight();
-
-        if(width%num != 0 || height%num !=0 ) {
-            String errorMsg = String.format("Tile size %d doesn't divide image dimensions %dx%d evenly. " +
-                "Image width must be divisible by %d (remainder: %d) and height must be divisible by %d (remainder: %d). " +
-                "Try tile sizes like: %s", 
-                num, width, height, num, width%num, num, height%num, getSuggestedTileSizes(width, height));
-            System.err.println(errorMsg);
-            throw new IllegalArgumentException(errorMsg);
+        int radius = filter.getNeighborhoodRadius();
+        if (token.isStopped()) {
+            return stopped(filter, token, startTime);
         }
 
-        int horizontalImages = width / num;
-        int verticalImages = height / num;
-
-        List<CompletableFuture<ImageData>> futures = new ArrayList<>();
-
-        for (int i=0; i<horizontalImages; i++) {
-            for (int j=0; j<verticalImages; j++) {
-                BufferedImage subImage = image.getSubimage(i*num, j*num, num, num);
-                int finalI = i;
-                int finalJ = j;
-                CompletableFuture<ImageData> future = CompletableFuture.supplyAsync( () -> {
-                    BufferedImage filteredImage = filter.apply(subImage);
-                    return new ImageData(filteredImage, finalI * num, finalJ * num, num, num);
-                }, executorService);
-                futures.add(future);
+        // Tiles read from one shared source view and write their interiors straight into the result
+        PixelBuffer source = PixelBuffer.of(image);
+        PixelBuffer target = PixelBuffer.create(width, height);
+        BufferedImage finalImage = target.toImage();
+
+        try {
+            pool.invoke(new TileTask(tiles, 0, tiles.size(), filter, source, target, finalImage, radius,
+                    GENERATIONS.incrementAndGet(), token));
+        } catch (CancellationException e) {
+            if (!token.isStopped()) {
+                throw e;
             }
+            return stopped(filter, token, startTime);
         }
 
-        futures.forEach(future -> {
-            future.thenAccept(drawFunc::addImageToQueue)
-                    .exceptionally(ex -> {
-                        System.err.println("Error processing image: " + ex.getMessage());
-                        return null;
-                    });
-        });
-
-        // announce when all are done
-        CompletableFuture<Void> allDone = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-        allDone.thenRun(() -> {
-            long endTime = System.currentTimeMillis();
-            System.out.println("All photos done asynchronously!");
-            System.out.println("Total processing time: " + (endTime - startTime) + " ms");
-        });
-        allDone.join();
-
-        // Combine results
-        BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = finalImage.createGraphics();
-
-        for (CompletableFuture<ImageData> future : futures) {
-            try {
-                ImageData imageData = future.get();
-                g.drawImage(imageData.getImage(), imageData.getI(), imageData.getJ(), null);
-            } catch (InterruptedException | ExecutionException e) {
-                System.err.println("Failed to get processed tile: " + e.getMessage());
-            }
+        long elapsedNanos = System.nanoTime() - startTime;
+        METRICS.recordFilterRun(metricName(filter), (long) width * height, elapsedNanos);
+
+        return ProcessingResult.completed(finalImage, elapsedNanos / 1_000_000);
+    }
+
+    private static ProcessingResult stopped(ImageFilter filter, CancellationToken token, long startTime) {
+        METRICS.recordFilterStopped(metricName(filter));
+        return ProcessingResult.stopped(token, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /**
+     * The filter's {@linkplain ImageFilter#getMetricName() metric name}, e.g. {@code BlurFilter}
+     * or {@code GreyScaleFilter+SepiaFilter+BlurFilter} for a chain, with anything but letters,
+     * digits, {@code _} and {@code +} replaced so it is a valid JMX attribute name.
+     */
+    static String metricName(ImageFilter filter) {
+        String name = filter.getMetricName().replaceAll("[^\\w+]", "_");
+        return name.isEmpty() ? "filter" : name;
+    }
+
+    /**
+     * Filters {@code tiles} of {@code source} into the same places of {@code target}, which has
+     * the same size, on the pool.
+     *
+     * @throws CancellationException if {@code token} stopped the run before every tile was done
+     */
+    void filterTiles(ImageFilter filter, PixelBuffer source, PixelBuffer target, List<Rectangle> tiles,
+                     CancellationToken token) {
+        pool.invoke(new TileTask(tiles, 0, tiles.size(), filter, source, target, target.toImage(),
+                filter.getNeighborhoodRadius(), GENERATIONS.incrementAndGet(), token));
+    }
+
+    /**
+     * Filters one tile. The filter reads the tile plus a halo of its neighborhood radius
+     * (clipped to the image), and only the tile interior is written back, so tile borders come
+     * out exactly as in a whole-image run. Results already in the tile cache are copied
+     * instead of filtered again.
+     */
+    private void filterTile(ImageFilter filter, PixelBuffer source, PixelBuffer target,
+                            Rectangle tile, int radius) {
+        PixelBuffer tileTarget = target.region(tile.x, tile.y, tile.width, tile.height);
+        if (!tileCache.isEnabled()) {
+            filterWithHalo(filter, source, tile, radius, tileTarget);
+            return;
         }
-        g.dispose();
-
-        return finalImage;
-    }
-    
-    private String getSuggestedTileSizes(int width, int height) {
-        java.util.List<Integer> suggestions = new java.util.ArrayList<>();
-        
-        // Find common divisors between 20 and 100
-        for (int size = 20; size <= 100; size += 5) {
-            if (width % size == 0 && height % size == 0) {
-                suggestions.add(size);
-            }
+
+        TileResultCache.Key key = TileResultCache.keyOf(filter, haloOf(source, tile, radius), tile,
+                source.getFrameWidth(), source.getFrameHeight());
+        if (!tileCache.copyTo(key, tileTarget)) {
+            filterWithHalo(filter, source, tile, radius, tileTarget);
+            tileCache.put(key, tileTarget);
         }
-        
-        // If no good divisors found in range, find any divisors
-        if (suggestions.isEmpty()) {
-            for (int size = 1; size <= Math.min(width, height); size++) {
-                if (width % size == 0 && height % size == 0 && size >= 10) {
-                    suggestions.add(size);
-                    if (suggestions.size() >= 5) break; // Limit suggestions
-                }
+    }
+
+    /** Filters {@code tile} of {@code source} into {@code tileTarget}, reading its halo too. */
+    private static void filterWithHalo(ImageFilter filter, PixelBuffer source, Rectangle tile, int radius,
+                                       PixelBuffer tileTarget) {
+        PixelBuffer input = haloOf(source, tile, radius);
+        if (radius == 0) {
+            filter.apply(input, tileTarget);
+        } else {
+            int haloX = Math.max(0, tile.x - radius);
+            int haloY = Math.max(0, tile.y - radius);
+            PixelBuffer haloResult = PixelBuffer.create(input.getWidth(), input.getHeight());
+            filter.apply(input, haloResult);
+            haloResult.region(tile.x - haloX, tile.y - haloY, tile.width, tile.height).copyTo(tileTarget);
+        }
+    }
+
+    // The tile plus its neighborhood radius, clipped to the image
+    private static PixelBuffer haloOf(PixelBuffer source, Rectangle tile, int radius) {
+        int haloX = Math.max(0, tile.x - radius);
+        int haloY = Math.max(0, tile.y - radius);
+        int haloWidth = Math.min(source.getWidth(), tile.x + tile.width + radius) - haloX;
+        int haloHeight = Math.min(source.getHeight(), tile.y + tile.height + radius) - haloY;
+        return source.region(haloX, haloY, haloWidth, haloHeight);
+    }
+
+    /**
+     * Filters a run of tiles, halving the run until single tiles remain so idle workers can
+     * steal the other halves. Each finished tile is queued for drawing straight away. Once the
+     * token stops, every task not yet started fails with a {@link CancellationException}.
+     */
+    @SuppressWarnings("serial")
+    private final class TileTask extends RecursiveAction {
+        private final List<Rectangle> tiles;
+        private final int from;
+        private final int to;
+        private final ImageFilter filter;
+        private final PixelBuffer source;
+        private final PixelBuffer target;
+        private final BufferedImage result;
+        private final int radius;
+        private final long generation;
+        private final CancellationToken token;
+
+        TileTask(List<Rectangle> tiles, int from, int to, ImageFilter filter, PixelBuffer source,
+                 PixelBuffer target, BufferedImage result, int radius, long generation, CancellationToken token) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.source = source;
+            this.target = target;
+            this.result = result;
+            this.radius = radius;
+            this.generation = generation;
+            this.token = token;
+        }
+
+        @Override
+        protected void compute() {
+            token.throwIfStopped();
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, mid, filter, source, target, result, radius, generation, token),
+                        new TileTask(tiles, mid, to, filter, source, target, result, radius, generation, token));
+                return;
+            }
+            if (to == from) {
+                return;
             }
+            Rectangle tile = tiles.get(from);
+            long tileStart = System.nanoTime();
+            filterTile(filter, source, target, tile, radius);
+            METRICS.recordTile(System.nanoTime() - tileStart);
+            tileSink.accept(new ImageData(result.getSubimage(tile.x, tile.y, tile.width, tile.height),
+                    tile.x, tile.y, tile.width, tile.height, generation));
         }
-        
-        return suggestions.isEmpty() ? "none found" : suggestions.toString();
     }
 }
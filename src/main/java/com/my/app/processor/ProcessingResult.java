@@ -0,0 +1,53 @@
+package com.my.app.processor;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+
+/**
+ * Outcome of a processing run that may be stopped by its {@link CancellationToken}. A stopped
+ * run has no image: the tiles it had finished are never handed out as a partial result.
+ */
+public final class ProcessingResult {
+    public enum Status { COMPLETED, CANCELLED, TIMED_OUT }
+
+    private final Status status;
+    private final BufferedImage image;
+    private final long elapsedMillis;
+
+    private ProcessingResult(Status status, BufferedImage image, long elapsedMillis) {
+        this.status = status;
+        this.image = image;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    static ProcessingResult completed(BufferedImage image, long elapsedMillis) {
+        return new ProcessingResult(Status.COMPLETED, image, elapsedMillis);
+    }
+
+    /** The result of a run stopped by {@code token}; cancellation wins over an expired deadline. */
+    static ProcessingResult stopped(CancellationToken token, long elapsedMillis) {
+        return new ProcessingResult(token.isCancelled() ? Status.CANCELLED : Status.TIMED_OUT, null, elapsedMillis);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+
+    /** The filtered image; empty unless the run completed. */
+    public Optional<BufferedImage> getImage() {
+        return Optional.ofNullable(image);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,110 @@
+package com.my.app.processor;
+
+import com.my.app.filters.ImageFilter;
+import com.my.app.image.PixelBuffer;
+import com.my.app.io.BandReader;
+import com.my.app.io.BandWriter;
+import com.my.app.io.WriteOptions;
+import com.my.app.metrics.MetricsRegistry;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Filters an image file into another a horizontal band at a time, for images too large to
+ * decode whole. Each band is decoded with the rows of halo its filter needs
+ * ({@link BandReader}), filtered in tiles on the pool, and handed to a {@link BandWriter} that
+ * encodes it while the next band is filtered. Peak memory is a handful of bands, so it grows
+ * with the image width and band height but not with the image height.
+ * <p>
+ * Bands default to about a 32nd of the maximum heap of pixels each, which can be set in MiB
+ * with the {@code imageprocessor.streamBandMb} system property. Output can be PNG or raw, see
+ * {@link BandWriter#supports}.
+ */
+public final class StreamingProcessor {
+    private static final long DEFAULT_BAND_BYTES = Long.getLong("imageprocessor.streamBandMb",
+            Runtime.getRuntime().maxMemory() / 32 >> 20) << 20;
+    // The decode window, the band being filtered, the queued ones and the one being encoded
+    private static final int BANDS_IN_FLIGHT = 5;
+    private static final int MIN_BAND_HEIGHT = 16;
+    // Keeps halo re-reads to at most half the band
+    private static final int MIN_HEIGHT_PER_HALO = 4;
+
+    private final ImageProcessor processor;
+    private final int parallelism;
+    private final long bandBytes;
+
+    public StreamingProcessor(ComputePool pool) {
+        this(pool, DEFAULT_BAND_BYTES);
+    }
+
+    public StreamingProcessor(ComputePool pool, long bandBytes) {
+        if (bandBytes <= 0) {
+            throw new IllegalArgumentException("Band size must be positive: " + bandBytes);
+        }
+        this.processor = new ImageProcessor(pool, TileSink.NONE, TileResultCache.disabled());
+        this.parallelism = pool.getParallelism();
+        this.bandBytes = bandBytes;
+    }
+
+    /** Rows per band for an image {@code width} pixels wide and a filter of {@code radius}. */
+    public int bandHeight(int width, int radius) {
+        long rows = bandBytes / ((long) width * Integer.BYTES);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(rows, Math.max(MIN_BAND_HEIGHT, MIN_HEIGHT_PER_HALO * radius)));
+    }
+
+    /** Estimated peak bytes of pixel data while streaming an image {@code width} pixels wide. */
+    public long footprintBytes(int width, int radius) {
+        return BANDS_IN_FLIGHT * ((long) bandHeight(width, radius) + 2L * radius) * width * Integer.BYTES;
+    }
+
+    /**
+     * Filters {@code input} with {@code filter} and writes the result to exactly {@code output}.
+     * The output file only appears once the whole image has been written.
+     *
+     * @throws IllegalArgumentException if {@code options} names a format that cannot be streamed
+     */
+    public void process(File input, File output, ImageFilter filter, WriteOptions options) throws IOException {
+        process(input, output, filter, options, CancellationToken.none());
+    }
+
+    /**
+     * Like {@link #process(File, File, ImageFilter, WriteOptions)}, checking {@code token} before
+     * every band and tile. A stopped run leaves no output file behind.
+     *
+     * @throws CancellationException if {@code token} stopped the run
+     */
+    public void process(File input, File output, ImageFilter filter, WriteOptions options, CancellationToken token)
+            throws IOException {
+        long startTime = System.nanoTime();
+        int radius = filter.getNeighborhoodRadius();
+        try (BandReader reader = BandReader.open(input);
+             BandWriter writer = BandWriter.open(output, reader.getWidth(), reader.getHeight(), options)) {
+            int width = reader.getWidth();
+            int bandHeight = bandHeight(width, radius);
+            reader.read(bandHeight, radius, (rows, bandY, bandRows) -> {
+                token.throwIfStopped();
+                // Tiles cover the band; the halo rows around it are only read
+                int offset = bandY - rows.getFrameY();
+                List<Rectangle> tiles = new ArrayList<>();
+                for (Rectangle tile : TilePlanner.plan(width, bandRows, radius, TilePlanner.Layout.SQUARE, parallelism)) {
+                    tile.translate(0, offset);
+                    tiles.add(tile);
+                }
+                PixelBuffer filtered = PixelBuffer.create(width, rows.getHeight());
+                processor.filterTiles(filter, rows, filtered, tiles, token);
+                writer.write(filtered.region(0, offset, width, bandRows));
+            });
+            writer.finish();
+            MetricsRegistry.shared().recordFilterRun(ImageProcessor.metricName(filter),
+                    (long) width * reader.getHeight(), System.nanoTime() - startTime);
+        } catch (CancellationException e) {
+            MetricsRegistry.shared().recordFilterStopped(ImageProcessor.metricName(filter));
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.my.app.processor;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an image of any size into tiles. Tiles on the right and bottom edges are simply
+ * smaller, so no tile size has to divide the image dimensions.
+ * <p>
+ * The automatic geometry keeps a tile's source (plus halo) and destination within one
+ * core's L2 cache, while still making several tiles per core so uneven tiles balance out.
+ * The cache size defaults to 1 MiB and can be set with the {@code imageprocessor.l2CacheBytes}
+ * system property.
+ */
+public final class TilePlanner {
+    public enum Layout { SQUARE, ROW_STRIPS }
+
+    private static final long L2_CACHE_BYTES = Long.getLong("imageprocessor.l2CacheBytes", 1L << 20);
+    private static final int TILES_PER_CORE = 4;
+    private static final int MIN_TILE_SIZE = 64;
+    private static final int MIN_STRIP_HEIGHT = 16;
+    // Keeps halo re-reads to at most ~2.25x the tile area
+    private static final int MIN_SIZE_PER_HALO = 4;
+
+    private TilePlanner() {
+    }
+
+    /**
+     * Square tiles of {@code tileSize}, row-major, with ragged right and bottom edges.
+     */
+    public static List<Rectangle> squares(int width, int height, int tileSize) {
+        return grid(width, height, tileSize, tileSize);
+    }
+
+    /**
+     * Full-width strips of {@code stripHeight} rows, the last one possibly shorter.
+     */
+    public static List<Rectangle> rowStrips(int width, int height, int stripHeight) {
+        return grid(width, height, Math.max(1, width), stripHeight);
+    }
+
+    /**
+     * Plans tiles with geometry chosen from the core count and cache size for a filter of the
+     * given neighborhood radius.
+     */
+    public static List<Rectangle> plan(int width, int height, int radius, Layout layout, int parallelism) {
+        if (layout == Layout.ROW_STRIPS) {
+            return rowStrips(width, height, autoStripHeight(width, height, radius, parallelism));
+        }
+        return squares(width, height, autoTileSize(width, height, radius, parallelism));
+    }
+
+    public static int autoTileSize(int width, int height, int radius, int parallelism) {
+        // Largest square whose halo-padded source and its destination both stay in L2
+        int cacheSide = (int) Math.sqrt(L2_CACHE_BYTES / (2.0 * Integer.BYTES)) - 2 * radius;
+        int balanceSide = (int) Math.sqrt((double) width * height / ((long) parallelism * TILES_PER_CORE));
+        int side = Math.min(cacheSide, balanceSide);
+        return Math.max(Math.max(MIN_TILE_SIZE, MIN_SIZE_PER_HALO * radius), side);
+    }
+
+    public static int autoStripHeight(int width, int height, int radius, int parallelism) {
+        int cacheRows = (int) (L2_CACHE_BYTES / (2L * Integer.BYTES * Math.max(1, width))) - 2 * radius;
+        int balanceRows = height / (parallelism * TILES_PER_CORE);
+        int rows = Math.min(cacheRows, balanceRows);
+        return Math.max(Math.max(MIN_STRIP_HEIGHT, MIN_SIZE_PER_HALO * radius), rows);
+    }
+
+    private static List<Rectangle> grid(int width, int height, int tileWidth, int tileHeight) {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileWidth + "x" + tileHeight);
+        }
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileHeight) {
+            for (int x = 0; x < width; x += tileWidth) {
+                tiles.add(new Rectangle(x, y, Math.min(tileWidth, width - x), Math.min(tileHeight, height - y)));
+            }
+        }
+        return tiles;
+    }
+}
@@ -0,0 +1,196 @@
+package com.my.app.processor;
+
+import com.my.app.filters.ImageFilter;
+import com.my.app.image.PixelBuffer;
+import com.my.app.metrics.MetricsRegistry;
+
+import java.awt.Rectangle;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of filtered tiles, bounded by the bytes of their pixels.
+ * <p>
+ * A tile's result is keyed by the filter's {@link ImageFilter#getIdentity() identity}, the
+ * tile's place in its frame and a hash of the source pixels the filter reads for it, halo
+ * included. Running the same filter over the same image again is therefore all hits, and after
+ * an edit to part of an image only the tiles whose neighborhood changed are filtered again.
+ * Filters must be deterministic functions of their identity, source pixels and position.
+ * <p>
+ * The application shares one instance, {@link #shared()}, whose capacity defaults to a
+ * sixteenth of the maximum heap and can be set in MiB with the
+ * {@code imageprocessor.tileCacheMb} system property; 0 disables it. Its counters are published
+ * as the {@code tileCache.*} gauges of {@link MetricsRegistry}.
+ */
+public final class TileResultCache {
+    private static final long DEFAULT_CAPACITY_BYTES = Long.getLong("imageprocessor.tileCacheMb",
+            Runtime.getRuntime().maxMemory() / 16 >> 20) << 20;
+    /** Rough bytes of key and map entry per tile, so many tiny tiles still count against the capacity. */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private static volatile TileResultCache shared;
+
+    /** Counters since the cache was created. */
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.0f%% hit rate), %d evictions, %d tiles in %.1f MiB",
+                    hits, misses, hitRate() * 100, evictions, entries, bytes / (double) (1 << 20));
+        }
+    }
+
+    /**
+     * One tile result: the filter, the tile within a frame of the given size, and a 128-bit
+     * hash of the source pixels read for it.
+     */
+    record Key(String filterIdentity, int x, int y, int width, int height, int frameWidth, int frameHeight,
+               long contentHash, long contentHash2) {
+    }
+
+    private final long capacityBytes;
+    private final Map<Key, int[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TileResultCache(long capacityBytes) {
+        if (capacityBytes < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacityBytes);
+        }
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * The application-wide cache, created on first use.
+     */
+    public static TileResultCache shared() {
+        TileResultCache cache = shared;
+        if (cache == null) {
+            synchronized (TileResultCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = new TileResultCache(Math.max(0, DEFAULT_CAPACITY_BYTES));
+                    TileResultCache stats = cache;
+                    MetricsRegistry metrics = MetricsRegistry.shared();
+                    metrics.registerGauge("tileCache.hits", () -> stats.getStats().hits());
+                    metrics.registerGauge("tileCache.misses", () -> stats.getStats().misses());
+                    metrics.registerGauge("tileCache.evictions", () -> stats.getStats().evictions());
+                    metrics.registerGauge("tileCache.bytes", () -> stats.getStats().bytes());
+                    metrics.registerGauge("tileCache.capacityBytes", stats::getCapacityBytes);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /** A cache that stores nothing, for callers that never filter the same pixels twice. */
+    public static TileResultCache disabled() {
+        return new TileResultCache(0);
+    }
+
+    public boolean isEnabled() {
+        return capacityBytes > 0;
+    }
+
+    /**
+     * The key of {@code tile}'s result when {@code filter} reads {@code input}, the tile plus
+     * its halo, from a frame of {@code frameWidth} x {@code frameHeight} pixels.
+     */
+    static Key keyOf(ImageFilter filter, PixelBuffer input, Rectangle tile, int frameWidth, int frameHeight) {
+        int[] data = input.getData();
+        int width = input.getWidth();
+        // Two independent multiply-xor lanes per pixel pair keep the CPU busy without a digest
+        long h1 = 0x9E3779B97F4A7C15L ^ ((long) input.getFrameX() << 32 | input.getFrameY());
+        long h2 = 0xC2B2AE3D27D4EB4FL ^ ((long) width << 32 | input.getHeight());
+        for (int y = 0; y < input.getHeight(); y++) {
+            int index = input.index(0, y);
+            int end = index + width;
+            for (; index + 1 < end; index += 2) {
+                long pair = (long) (data[index] & 0xFFFFFF) << 32 | (data[index + 1] & 0xFFFFFF);
+                h1 = Long.rotateLeft(h1 ^ pair, 29) * 0xBF58476D1CE4E5B9L;
+                h2 = Long.rotateLeft(h2 + pair, 31) * 0x94D049BB133111EBL;
+            }
+            if (index < end) {
+                h1 = Long.rotateLeft(h1 ^ (data[index] & 0xFFFFFF), 29) * 0xBF58476D1CE4E5B9L;
+                h2 = Long.rotateLeft(h2 + (data[index] & 0xFFFFFF), 31) * 0x94D049BB133111EBL;
+            }
+        }
+        return new Key(filter.getIdentity(), tile.x, tile.y, tile.width, tile.height, frameWidth, frameHeight,
+                mix(h1 ^ h2 >>> 17), mix(h2 ^ h1 >>> 23));
+    }
+
+    /**
+     * Copies the cached result for {@code key} into {@code tileTarget}, returning false on a miss.
+     */
+    boolean copyTo(Key key, PixelBuffer tileTarget) {
+        int[] pixels;
+        synchronized (this) {
+            pixels = entries.get(key);
+            if (pixels == null) {
+                misses++;
+                return false;
+            }
+            hits++;
+        }
+        // Cached arrays are never modified, so copying outside the lock is safe
+        PixelBuffer.wrap(pixels, 0, key.width(), key.width(), key.height()).copyTo(tileTarget);
+        return true;
+    }
+
+    /** Stores a copy of {@code tileResult} under {@code key}. */
+    void put(Key key, PixelBuffer tileResult) {
+        long weight = weight(tileResult.getWidth(), tileResult.getHeight());
+        if (weight > capacityBytes) {
+            return;
+        }
+        int[] pixels = new int[tileResult.getWidth() * tileResult.getHeight()];
+        tileResult.copyTo(PixelBuffer.wrap(pixels, 0, tileResult.getWidth(), tileResult.getWidth(),
+                tileResult.getHeight()));
+        synchronized (this) {
+            int[] previous = entries.put(key, pixels);
+            bytes += weight - (previous == null ? 0 : weight(previous.length));
+            Iterator<int[]> eldest = entries.values().iterator();
+            while (bytes > capacityBytes) {
+                bytes -= weight(eldest.next().length);
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    private static long weight(int width, int height) {
+        return weight((long) width * height);
+    }
+
+    private static long weight(long pixels) {
+        return pixels * Integer.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /** The SplitMix64 finalizer. */
+    private static long mix(long h) {
+        h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+        return h ^ h >>> 31;
+    }
+}
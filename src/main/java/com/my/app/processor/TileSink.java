@@ -0,0 +1,16 @@
+package com.my.app.processor;
+
+import com.my.app.image.ImageData;
+
+/**
+ * Receives each finished tile of an async run, and the whole result of a sync run, as soon as
+ * it is ready. Called from worker threads.
+ */
+@FunctionalInterface
+public interface TileSink {
+    /** Discards tiles, for headless callers that only need the final image. */
+    TileSink NONE = tile -> {
+    };
+
+    void accept(ImageData tile);
+}
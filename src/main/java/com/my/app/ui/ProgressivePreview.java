@@ -0,0 +1,161 @@
+package com.my.app.ui;
+
+import com.my.app.filters.ImageFilter;
+import com.my.app.processor.CancellationToken;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.ProcessingResult;
+import com.my.app.processor.TileSink;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Shows a filter's result in two steps: first on a small proxy of the image, which takes a few
+ * tens of milliseconds even for a 40 MP original, then on the full image. Starting another run
+ * cancels the one in flight: its tiles not yet filtered are skipped, so the pool is free for the
+ * new run at once, and a stale result never replaces a newer one. Results come with a copy for
+ * display, made off the JavaFX thread, so even a 40 MP result never stalls it.
+ * <p>
+ * Methods must be called on the JavaFX thread, and listeners are called there.
+ */
+public final class ProgressivePreview {
+    /** Longest side of the proxies made by {@link #proxyOf}. */
+    public static final int PROXY_MAX_DIMENSION = 800;
+
+    public interface Listener {
+        /**
+         * The filtered proxy and its {@linkplain #displayImageOf display copy},
+         * {@code elapsedMillis} after the run was started.
+         */
+        void proxyReady(BufferedImage result, Image display, long elapsedMillis);
+
+        /**
+         * The filtered full image and its {@linkplain #displayImageOf display copy},
+         * {@code elapsedMillis} after the run was started.
+         */
+        void fullReady(BufferedImage result, Image display, long elapsedMillis);
+
+        void failed(Throwable error);
+    }
+
+    private final ImageProcessor processor;
+    private final ImageProcessor proxyProcessor;
+    private Task<Rendered> running;
+
+    /**
+     * Runs filters through {@code processor}, on its pool. Proxies go through a processor on
+     * the same pool and tile cache that draws nothing, since the canvas is full size.
+     */
+    public ProgressivePreview(ImageProcessor processor) {
+        this.processor = processor;
+        this.proxyProcessor = new ImageProcessor(processor.getPool(), TileSink.NONE, processor.getTileCache());
+    }
+
+    /**
+     * Scales {@code image} down so that neither side exceeds {@link #PROXY_MAX_DIMENSION}, or
+     * returns it as is if it is already that small.
+     */
+    public static BufferedImage proxyOf(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) PROXY_MAX_DIMENSION / Math.max(width, height));
+        if (scale == 1.0) {
+            return image;
+        }
+        int proxyWidth = Math.max(1, (int) Math.round(width * scale));
+        int proxyHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage proxy = new BufferedImage(proxyWidth, proxyHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = proxy.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, proxyWidth, proxyHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return proxy;
+    }
+
+    /**
+     * A JavaFX copy of {@code image} scaled down like {@link #proxyOf}, which is plenty for an
+     * image view. Call it off the JavaFX thread for large images.
+     */
+    public static Image displayImageOf(BufferedImage image) {
+        return SwingFXUtils.toFXImage(proxyOf(image), null);
+    }
+
+    /**
+     * Cancels the run in flight and filters {@code proxy}, if not null, and then {@code full}
+     * with {@code filter}. {@code tileSize} and {@code async} apply to the full image, as in
+     * {@link ImageProcessor#processImage(BufferedImage, int, ImageFilter, boolean)}. While the
+     * full image is still being decoded, {@code full} may be null: only the proxy is filtered
+     * then, and {@link Listener#fullReady} is not called.
+     */
+    public void start(BufferedImage proxy, BufferedImage full, ImageFilter filter, int tileSize, boolean async,
+                      Listener listener) {
+        cancel();
+        long startTime = System.nanoTime();
+        Task<Rendered> task = new Task<>() {
+            @Override
+            protected Rendered call() {
+                CancellationToken token = CancellationToken.of(this::isCancelled);
+                if (proxy != null) {
+                    ProcessingResult proxyResult = proxyProcessor.processImage(proxy, ImageProcessor.AUTO_TILE_SIZE,
+                            filter, true, token);
+                    if (!proxyResult.isCompleted()) {
+                        return null;
+                    }
+                    Rendered proxyRendered = Rendered.of(proxyResult.getImage().get());
+                    Platform.runLater(() -> {
+                        if (!isCancelled()) {
+                            listener.proxyReady(proxyRendered.image(), proxyRendered.display(),
+                                    elapsedMillis(startTime));
+                        }
+                    });
+                }
+                if (full == null) {
+                    return null;
+                }
+                return processor.processImage(full, tileSize, filter, async, token).getImage()
+                        .map(Rendered::of).orElse(null);
+            }
+
+            @Override
+            protected void succeeded() {
+                Rendered rendered = getValue();
+                if (rendered != null) {
+                    listener.fullReady(rendered.image(), rendered.display(), elapsedMillis(startTime));
+                }
+            }
+
+            @Override
+            protected void failed() {
+                listener.failed(getException());
+            }
+        };
+        running = task;
+        processor.getPool().execute(task);
+    }
+
+    /** Stops the run in flight, if any, from reporting anything more. */
+    public void cancel() {
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    private record Rendered(BufferedImage image, Image display) {
+        static Rendered of(BufferedImage image) {
+            return new Rendered(image, displayImageOf(image));
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
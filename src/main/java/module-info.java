@@ -13,6 +13,8 @@ module com.converter.imageprocessorapp {
     requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
     requires java.desktop;
+    requires java.management;
+    requires static jdk.incubator.vector;
     requires static lombok;
 
     opens com.my.app to javafx.fxml;
@@ -24,4 +26,5 @@ module com.converter.imageprocessorapp {
     exports com.my.app.ui;
     exports com.my.app.io;
     exports com.my.app.processor;
+    exports com.my.app.metrics;
 }
\ No newline at end of file
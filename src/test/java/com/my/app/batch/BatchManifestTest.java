@@ -0,0 +1,196 @@
+package com.my.app.batch;
+
+import com.my.app.io.DecodedImageCache;
+import com.my.app.io.ImageFileIO;
+import com.my.app.processor.ComputePool;
+import com.my.app.processor.ImageProcessor;
+import com.my.app.processor.TileResultCache;
+import com.my.app.processor.TileSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchManifestTest {
+    private static final String IDENTITY = "com.my.app.filters.impl.SepiaFilter -> PNG(level=4)";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordedOperationIsDoneAfterReopening() throws IOException {
+        File input = write("input.jpg", "pixels");
+        File output = write("out/input_sepia.png", "result");
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            manifest.record(input, manifest.hash(input), "Sepia", IDENTITY, output.getName());
+        }
+
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            String hash = manifest.hash(input);
+            assertTrue(manifest.isDone(hash, IDENTITY, output.getName()));
+            assertFalse(manifest.isDone(hash, "other identity", output.getName()));
+            assertFalse(manifest.isDone(hash, IDENTITY, "input_grayscale.png"));
+        }
+    }
+
+    @Test
+    void changedOrMissingOutputIsNotDone() throws IOException {
+        File input = write("input.jpg", "pixels");
+        File output = write("out/input_sepia.png", "result");
+        String hash;
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            hash = manifest.hash(input);
+            manifest.record(input, hash, "Sepia", IDENTITY, output.getName());
+        }
+
+        Files.writeString(output.toPath(), "truncated");
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            assertFalse(manifest.isDone(hash, IDENTITY, output.getName()));
+        }
+        Files.delete(output.toPath());
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            assertFalse(manifest.isDone(hash, IDENTITY, output.getName()));
+        }
+    }
+
+    @Test
+    void missingOutputIsNotRecorded() throws IOException {
+        File input = write("input.jpg", "pixels");
+        File outputDirectory = directory.resolve("out").toFile();
+        try (BatchManifest manifest = BatchManifest.open(outputDirectory)) {
+            manifest.record(input, manifest.hash(input), "Sepia", IDENTITY, "input_sepia.png");
+        }
+
+        assertEquals(1, Files.readAllLines(manifestPath(outputDirectory)).size());
+    }
+
+    @Test
+    void unchangedInputReusesRecordedHash() throws IOException {
+        File input = write("input.jpg", "pixels");
+        File output = write("out/input_sepia.png", "result");
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            manifest.record(input, "recorded-hash", "Sepia", IDENTITY, output.getName());
+        }
+
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            assertEquals("recorded-hash", manifest.hash(input));
+            Files.writeString(input.toPath(), "other pixels");
+            assertNotEquals("recorded-hash", manifest.hash(input));
+        }
+    }
+
+    @Test
+    void tornAndCorruptedLinesAreIgnored() throws IOException {
+        File input = write("input.jpg", "pixels");
+        File first = write("out/input_sepia.png", "result");
+        File second = write("out/input_grayscale.png", "gray result");
+        File outputDirectory = first.getParentFile();
+        String hash;
+        try (BatchManifest manifest = BatchManifest.open(outputDirectory)) {
+            hash = manifest.hash(input);
+            manifest.record(input, hash, "Sepia", IDENTITY, first.getName());
+        }
+        // One line with a flipped character, then half a line as a crash would leave it
+        Path path = manifestPath(outputDirectory);
+        List<String> lines = Files.readAllLines(path);
+        String entry = lines.get(1);
+        String corrupted = entry.replace("input_sepia", "input_sepiA");
+        Files.writeString(path, corrupted + "\n" + entry.substring(0, entry.length() / 2), StandardOpenOption.APPEND);
+
+        try (BatchManifest manifest = BatchManifest.open(outputDirectory)) {
+            assertTrue(manifest.isDone(hash, IDENTITY, first.getName()));
+            assertFalse(manifest.isDone(hash, IDENTITY, "input_sepiA.png"));
+            manifest.record(input, hash, "Grayscale", "gray", second.getName());
+        }
+
+        try (BatchManifest manifest = BatchManifest.open(outputDirectory)) {
+            assertTrue(manifest.isDone(hash, IDENTITY, first.getName()));
+            assertTrue(manifest.isDone(hash, "gray", second.getName()));
+        }
+    }
+
+    @Test
+    void fieldsWithTabsAndLineBreaksRoundTrip() throws IOException {
+        File input = write("in\tput.jpg", "pixels");
+        File output = write("out/input_sepia.png", "result");
+        String identity = "Filter(a=1)\n\tthen \\ Filter(b=2)\r";
+        String hash;
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            hash = manifest.hash(input);
+            manifest.record(input, hash, "Sepia", identity, output.getName());
+        }
+
+        try (BatchManifest manifest = BatchManifest.open(output.getParentFile())) {
+            assertTrue(manifest.isDone(hash, identity, output.getName()));
+        }
+    }
+
+    @Test
+    void rerunSkipsCompletedOperationsAndRedoesChangedInputs() throws Exception {
+        File first = writeImage("first.png", 1);
+        File second = writeImage("second.png", 2);
+        File outputDirectory = directory.resolve("out").toFile();
+        List<File> inputs = List.of(first, second);
+        List<String> filters = List.of("Sepia", "Grayscale");
+
+        try (ComputePool pool = new ComputePool(2)) {
+            BatchEngine engine = new BatchEngine(new ImageFileIO(DecodedImageCache.disabled()),
+                    new ImageProcessor(pool, TileSink.NONE, TileResultCache.disabled()), MemoryBudget.parse("64m"),
+                    1, 1);
+
+            BatchResult initial = engine.run(inputs, filters, outputDirectory, BatchListener.NONE, () -> false);
+            assertEquals(4, initial.getCompletedOperations());
+            assertEquals(0, initial.getSkippedOperations());
+
+            BatchResult rerun = engine.run(inputs, filters, outputDirectory, BatchListener.NONE, () -> false);
+            assertTrue(rerun.isComplete());
+            assertEquals(4, rerun.getSkippedOperations());
+
+            writeImage("second.png", 3);
+            Files.delete(outputDirectory.toPath().resolve("first_sepia.png"));
+            BatchResult afterChanges = engine.run(inputs, filters, outputDirectory, BatchListener.NONE, () -> false);
+            assertTrue(afterChanges.isComplete());
+            assertEquals(1, afterChanges.getSkippedOperations());
+            assertTrue(new File(outputDirectory, "first_sepia.png").isFile());
+        }
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path path = directory.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path.toFile();
+    }
+
+    private File writeImage(String name, long seed) throws IOException {
+        Random random = new Random(seed);
+        // A different size on every write, so a changed input is never mistaken for the old one
+        BufferedImage image = new BufferedImage(40 + (int) seed, 30, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        File file = directory.resolve(name).toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    private static Path manifestPath(File outputDirectory) {
+        return outputDirectory.toPath().resolve(BatchManifest.FILE_NAME);
+    }
+}
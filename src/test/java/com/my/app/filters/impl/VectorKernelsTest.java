@@ -0,0 +1,149 @@
+package com.my.app.filters.impl;
+
+import com.my.app.filters.FilterFactory;
+import com.my.app.filters.ImageFilter;
+import com.my.app.image.PixelBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that every {@link VectorKernels} kernel writes exactly what its scalar twin writes.
+ * The build runs this class twice, with {@link SimdSupport} on and off; the filter digests
+ * are the same constants in both runs.
+ */
+class VectorKernelsTest {
+    private static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    // Not a multiple of any vector length, so every kernel leaves a scalar tail
+    private static final int LENGTH = 1037;
+    private static final int SRC_INDEX = 3;
+    private static final int DST_INDEX = 5;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void luminanceRowMatchesScalar() {
+        assumeTrue(VECTOR_API);
+        int[] src = randomPixels(SRC_INDEX + LENGTH);
+        int[] dst = new int[DST_INDEX + LENGTH];
+        int end = VectorKernels.luminanceRow(src, SRC_INDEX, dst, DST_INDEX, LENGTH);
+
+        assertTrue(end > 0);
+        for (int i = 0; i < end; i++) {
+            assertEquals(GreyScaleFilter.luminance(src[SRC_INDEX + i]), dst[DST_INDEX + i], "pixel " + i);
+        }
+    }
+
+    @Test
+    void sepiaRowMatchesScalar() {
+        assumeTrue(VECTOR_API);
+        int[] src = randomPixels(SRC_INDEX + LENGTH);
+        int[] dst = new int[DST_INDEX + LENGTH];
+        int end = VectorKernels.sepiaRow(src, SRC_INDEX, dst, DST_INDEX, LENGTH);
+
+        assertTrue(end > 0);
+        for (int i = 0; i < end; i++) {
+            assertEquals(SepiaFilter.sepia(src[SRC_INDEX + i]), dst[DST_INDEX + i], "pixel " + i);
+        }
+    }
+
+    @Test
+    void vintageRowMatchesScalar() {
+        assumeTrue(VECTOR_API);
+        int[] src = randomPixels(SRC_INDEX + LENGTH);
+        int[] factors = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            factors[i] = random.nextInt((1 << VignetteMask.SHIFT) + 1);
+        }
+        int[] dst = new int[DST_INDEX + LENGTH];
+        int end = VectorKernels.vintageRow(src, SRC_INDEX, dst, DST_INDEX, LENGTH, factors);
+
+        assertTrue(end > 0);
+        for (int i = 0; i < end; i++) {
+            assertEquals(VintageFilter.vintage(src[SRC_INDEX + i], factors[i]), dst[DST_INDEX + i], "pixel " + i);
+        }
+    }
+
+    @Test
+    void convolveRowMatchesScalar() {
+        assumeTrue(VECTOR_API);
+        int[][] kernels = {
+                {0, -1, 0, -1, 5, -1, 0, -1, 0},
+                {-2, -1, 0, -1, 1, 1, 0, 1, 2},
+        };
+        int[] biases = {0, 128};
+        int[] in = randomPixels(3 * LENGTH);
+        for (int k = 0; k < kernels.length; k++) {
+            int[] out = new int[DST_INDEX + LENGTH];
+            int end = VectorKernels.convolveRow(in, 0, LENGTH, 2 * LENGTH, out, DST_INDEX, LENGTH - 1,
+                    kernels[k], biases[k]);
+
+            assertTrue(end > 1);
+            for (int x = 1; x < end; x++) {
+                assertEquals(Convolution3x3.convolvePixel(in, 0, LENGTH, 2 * LENGTH, x, kernels[k], biases[k]),
+                        out[DST_INDEX + x], "kernel " + k + ", pixel " + x);
+            }
+        }
+    }
+
+    @Test
+    void sobelRowMatchesScalar() {
+        assumeTrue(VECTOR_API);
+        int[] above = randomLuminance();
+        int[] center = randomLuminance();
+        int[] below = randomLuminance();
+        int[] out = new int[DST_INDEX + LENGTH];
+        int end = VectorKernels.sobelRow(above, center, below, out, DST_INDEX, LENGTH - 1);
+
+        assertTrue(end > 1);
+        for (int x = 1; x < end; x++) {
+            assertEquals(Convolution3x3.sobelPixel(above, center, below, x), out[DST_INDEX + x], "pixel " + x);
+        }
+    }
+
+    @Test
+    void simdSupportFollowsProperty() {
+        boolean requested = Boolean.parseBoolean(System.getProperty("imageprocessor.simd", "true"));
+        assertEquals(requested && VECTOR_API, SimdSupport.ENABLED);
+    }
+
+    /**
+     * Digests of each filter's output for the same random image. They were recorded from the
+     * scalar paths, so a SIMD run only passes if it writes the same pixels.
+     */
+    @Test
+    void filtersProduceSameDigestsWithAndWithoutSimd() {
+        assertDigest("Grayscale", 0x60729bfd);
+        assertDigest("Sepia", 0xb4bc94b3);
+        assertDigest("Vintage", 0xab1b10f3);
+        assertDigest("Sharpen", 0xdc8cc388);
+        assertDigest("Emboss", 0x1892ff0b);
+        assertDigest("Edge Detection", 0xd4fe3b97);
+    }
+
+    private void assertDigest(String filterName, int expected) {
+        ImageFilter filter = FilterFactory.getFilter(filterName);
+        PixelBuffer source = PixelBuffer.wrap(new Random(7).ints(301 * 203).toArray(), 0, 301, 301, 203);
+        PixelBuffer target = PixelBuffer.create(301, 203);
+        filter.apply(source, target);
+        int[] pixels = target.getData().clone();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] &= 0xFFFFFF;
+        }
+        assertEquals(expected, Arrays.hashCode(pixels),
+                () -> filterName + " digest (SIMD " + (SimdSupport.ENABLED ? "on" : "off") + ")");
+    }
+
+    private int[] randomPixels(int length) {
+        return random.ints(length).toArray();
+    }
+
+    private int[] randomLuminance() {
+        return random.ints(LENGTH, 0, 256).toArray();
+    }
+}
@@ -0,0 +1,51 @@
+package com.my.app.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncImageWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void trySubmitIsEmptyWhileTheWriterIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageOperations blocking = new ImageFileIO() {
+            @Override
+            public void writeImage(BufferedImage image, File file, WriteOptions options) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeImage(image, file, options);
+            }
+        };
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+        try (AsyncImageWriter writer = new AsyncImageWriter(blocking, 1, 1)) {
+            File first = directory.resolve("first.png").toFile();
+            Optional<CompletableFuture<File>> queued = writer.trySubmit(image, first, WriteOptions.PNG);
+            assertTrue(queued.isPresent());
+            assertFalse(writer.trySubmit(image, directory.resolve("second.png").toFile(), WriteOptions.PNG).isPresent());
+
+            release.countDown();
+            assertEquals(first, queued.get().get(10, TimeUnit.SECONDS));
+            assertTrue(writer.trySubmit(image, directory.resolve("third.png").toFile(), WriteOptions.PNG).isPresent());
+        }
+        assertTrue(directory.resolve("third.png").toFile().exists());
+    }
+}
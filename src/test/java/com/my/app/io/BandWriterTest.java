@@ -0,0 +1,136 @@
+package com.my.app.io;
+
+import com.my.app.image.PixelBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandWriterTest {
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 61;
+    private static final int BAND_HEIGHT = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pngAppearsOnlyWhenFinished() throws IOException {
+        File target = directory.resolve("out.png").toFile();
+        PixelBuffer image = randomImage();
+
+        try (BandWriter writer = BandWriter.open(target, WIDTH, HEIGHT, WriteOptions.PNG)) {
+            writeBands(writer, image);
+            assertFalse(target.exists());
+            assertTrue(Files.exists(temporaryOf(target)));
+            writer.finish();
+        }
+
+        assertFalse(Files.exists(temporaryOf(target)));
+        assertArrayEquals(rgb(image), rgb(PixelBuffer.of(ImageIO.read(target))));
+    }
+
+    @Test
+    void rawAppearsOnlyWhenFinished() throws IOException {
+        File target = directory.resolve("out." + RawTiledImage.EXTENSION).toFile();
+        PixelBuffer image = randomImage();
+
+        try (BandWriter writer = BandWriter.open(target, WIDTH, HEIGHT, WriteOptions.RAW)) {
+            writeBands(writer, image);
+            assertFalse(target.exists());
+            writer.finish();
+        }
+
+        assertFalse(Files.exists(temporaryOf(target)));
+        BufferedImage written = RawTiledImage.open(target.toPath()).asBufferedImage();
+        PixelBuffer copy = PixelBuffer.create(WIDTH, HEIGHT);
+        PixelBuffer.of(written).copyTo(copy);
+        assertArrayEquals(rgb(image), rgb(copy));
+    }
+
+    @Test
+    void closingUnfinishedImageKeepsPreviousOutput() throws IOException {
+        for (WriteOptions options : new WriteOptions[]{WriteOptions.PNG, WriteOptions.RAW}) {
+            File target = directory.resolve("out." + options.getFormat().getExtension()).toFile();
+            Files.writeString(target.toPath(), "previous output");
+
+            try (BandWriter writer = BandWriter.open(target, WIDTH, HEIGHT, options)) {
+                writer.write(randomImage().region(0, 0, WIDTH, BAND_HEIGHT));
+            }
+
+            assertEquals("previous output", Files.readString(target.toPath()), options.toString());
+            assertFalse(Files.exists(temporaryOf(target)), options.toString());
+        }
+    }
+
+    @Test
+    void finishingIncompleteImageFailsAndLeavesNoFiles() throws IOException {
+        File target = directory.resolve("out.png").toFile();
+
+        try (BandWriter writer = BandWriter.open(target, WIDTH, HEIGHT, WriteOptions.PNG)) {
+            writer.write(randomImage().region(0, 0, WIDTH, BAND_HEIGHT));
+            assertThrows(IllegalStateException.class, writer::finish);
+        }
+
+        assertFalse(target.exists());
+        assertFalse(Files.exists(temporaryOf(target)));
+    }
+
+    @Test
+    void rejectsBandsThatDoNotFit() throws IOException {
+        File target = directory.resolve("out.png").toFile();
+        PixelBuffer image = randomImage();
+
+        try (BandWriter writer = BandWriter.open(target, WIDTH, HEIGHT, WriteOptions.PNG)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(image.region(0, 0, WIDTH - 1, 1)));
+            writer.write(image.region(0, 0, WIDTH, HEIGHT - 1));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(image.region(0, 0, WIDTH, 2)));
+        }
+    }
+
+    @Test
+    void jpegCannotBeStreamed() {
+        File target = directory.resolve("out.jpg").toFile();
+
+        assertFalse(BandWriter.supports(WriteOptions.jpeg(WriteOptions.DEFAULT_JPEG_QUALITY)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BandWriter.open(target, WIDTH, HEIGHT, WriteOptions.jpeg(WriteOptions.DEFAULT_JPEG_QUALITY)));
+        assertFalse(target.exists());
+    }
+
+    private static void writeBands(BandWriter writer, PixelBuffer image) throws IOException {
+        for (int y = 0; y < HEIGHT; y += BAND_HEIGHT) {
+            writer.write(image.region(0, y, WIDTH, Math.min(BAND_HEIGHT, HEIGHT - y)));
+        }
+    }
+
+    private static PixelBuffer randomImage() {
+        return PixelBuffer.wrap(new Random(11).ints(WIDTH * HEIGHT).toArray(), 0, WIDTH, WIDTH, HEIGHT);
+    }
+
+    private static int[] rgb(PixelBuffer pixels) {
+        int[] values = new int[pixels.getWidth() * pixels.getHeight()];
+        for (int y = 0; y < pixels.getHeight(); y++) {
+            for (int x = 0; x < pixels.getWidth(); x++) {
+                values[y * pixels.getWidth() + x] = pixels.getData()[pixels.index(x, y)] & 0xFFFFFF;
+            }
+        }
+        return values;
+    }
+
+    private static Path temporaryOf(File target) {
+        return target.toPath().resolveSibling("." + target.getName() + ".tmp");
+    }
+}